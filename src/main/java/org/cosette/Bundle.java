@@ -0,0 +1,193 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A Bundle instance writes the translations of many files to a single JSON Lines file, one compact JSON object per
+ * line. When the bundle is closed, an index mapping every entry name to the byte offset and length of its line is
+ * written next to it, so that a reader can seek straight to any entry. A bundle in a binary format holds its entries
+ * back to back instead of one per line.
+ * <p>
+ * A bundle can also share table definitions between its entries. Every distinct definition is then written once as its
+ * own line, indexed as "schema:" followed by its content hash, and the schemas section of every entry only lists the
+ * content hashes of the tables it uses.
+ */
+public class Bundle implements Closeable {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final File file;
+    private final OutputStream stream;
+    private final Map<String, long[]> index = new LinkedHashMap<>();
+    private final boolean shareSchemas;
+    private final OutputFormat format;
+    private long position = 0;
+
+    /**
+     * Create a bundle writing to the given file.
+     *
+     * @param target The given file.
+     */
+    public Bundle(File target) throws IOException {
+        this(target, false);
+    }
+
+    /**
+     * Create a bundle writing to the given file, optionally sharing table definitions between its entries.
+     *
+     * @param target The given file.
+     * @param shared Whether to write every distinct table definition only once.
+     */
+    public Bundle(File target, boolean shared) throws IOException {
+        this(target, shared, OutputFormat.COMPACT_JSON);
+    }
+
+    /**
+     * Create a bundle writing to the given file in the given format. Pretty-printed JSON is written compactly.
+     *
+     * @param target   The given file.
+     * @param shared   Whether to write every distinct table definition only once.
+     * @param encoding The given format.
+     */
+    public Bundle(File target, boolean shared, OutputFormat encoding) throws IOException {
+        file = target;
+        shareSchemas = shared;
+        format = encoding == OutputFormat.JSON ? OutputFormat.COMPACT_JSON : encoding;
+        stream = new BufferedOutputStream(new FileOutputStream(target), 1 << 16);
+    }
+
+    /**
+     * @param bundle The given bundle file.
+     * @return The index file of the bundle.
+     */
+    public static File indexOf(File bundle) {
+        return new File(bundle.getPath() + ".index");
+    }
+
+    /**
+     * Read an entry of a bundle through its index. Shared table definitions are resolved, so the entry is returned in
+     * the same format as a single translation.
+     *
+     * @param bundle The given bundle file.
+     * @param name   The name of the entry.
+     * @return The entry, or null if the bundle has no entry with the given name.
+     */
+    public static JsonNode read(File bundle, String name) throws IOException {
+        return read(bundle, name, OutputFormat.COMPACT_JSON);
+    }
+
+    /**
+     * Read an entry of a bundle written in the given format through its index.
+     *
+     * @param bundle   The given bundle file.
+     * @param name     The name of the entry.
+     * @param encoding The format of the bundle.
+     * @return The entry, or null if the bundle has no entry with the given name.
+     */
+    public static JsonNode read(File bundle, String name, OutputFormat encoding) throws IOException {
+        JsonNode index = mapper.readTree(indexOf(bundle));
+        if (!index.has(name)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(bundle.toPath(), StandardOpenOption.READ)) {
+            JsonNode entry = readLine(channel, index.get(name), encoding);
+            JsonNode schemas = entry.get("schemas");
+            if (schemas != null) {
+                for (int table = 0; table < schemas.size(); table += 1) {
+                    if (schemas.get(table).isTextual()) {
+                        ((ArrayNode) schemas).set(table, readLine(channel, index.get("schema:" + schemas.get(table).asText()), encoding));
+                    }
+                }
+            }
+            return entry;
+        }
+    }
+
+    private static JsonNode readLine(FileChannel channel, JsonNode location, OutputFormat encoding) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, location.get(0).asLong(), location.get(1).asLong());
+        byte[] line = new byte[buffer.remaining()];
+        buffer.get(line);
+        return encoding.getMapper().readTree(line);
+    }
+
+    /**
+     * Compute the content hash of a table definition serialized as compact JSON, which does not depend on the format of
+     * the bundle.
+     *
+     * @param definition The given serialized definition.
+     * @return The first 128 bits of its SHA-256 hash, in hexadecimal.
+     */
+    static String contentHash(String definition) {
+        return TranslationCache.hash(definition).substring(0, 32);
+    }
+
+    /**
+     * Append an entry to the bundle. An entry with the same name as an earlier one shadows it in the index. If table
+     * definitions are shared, the definitions not written yet are appended first, and the schemas section of the
+     * entry is replaced by their content hashes. The given ObjectNode instance is not modified.
+     *
+     * @param name The name of the entry.
+     * @param json The translated ObjectNode instance.
+     */
+    public synchronized void add(String name, ObjectNode json) throws IOException {
+        if (shareSchemas && json.has("schemas")) {
+            ObjectNode entry = mapper.createObjectNode();
+            ArrayNode hashes = entry.putArray("schemas");
+            for (JsonNode schema : json.get("schemas")) {
+                String hash = contentHash(mapper.writeValueAsString(schema));
+                if (!index.containsKey("schema:" + hash)) {
+                    writeLine("schema:" + hash, format.getWriter().writeValueAsBytes(schema));
+                }
+                hashes.add(hash);
+            }
+            json.fields().forEachRemaining(field -> {
+                if (!field.getKey().equals("schemas")) {
+                    entry.set(field.getKey(), field.getValue());
+                }
+            });
+            json = entry;
+        }
+        writeLine(name, format.getWriter().writeValueAsBytes(json));
+    }
+
+    private void writeLine(String name, byte[] line) throws IOException {
+        stream.write(line);
+        index.put(name, new long[]{position, line.length});
+        position += line.length;
+        if (format.isJSON()) {
+            stream.write('\n');
+            position += 1;
+        }
+    }
+
+    /**
+     * Flush the bundle and write its index. <br>
+     * Index format: {name: [offset, length]}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        stream.close();
+        ObjectNode indexObject = mapper.createObjectNode();
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            ArrayNode location = indexObject.putArray(entry.getKey());
+            location.add(entry.getValue()[0]).add(entry.getValue()[1]);
+        }
+        mapper.writeValue(indexOf(file), indexObject);
+    }
+
+}
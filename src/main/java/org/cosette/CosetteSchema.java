@@ -0,0 +1,399 @@
+package org.cosette;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.schema.*;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.ddl.SqlCheckConstraint;
+import org.apache.calcite.sql.ddl.SqlColumnDeclaration;
+import org.apache.calcite.sql.ddl.SqlCreateTable;
+import org.apache.calcite.sql.ddl.SqlCreateView;
+import org.apache.calcite.sql.ddl.SqlKeyConstraint;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.util.*;
+
+/**
+ * A CosetteSchema instance holds the tables, the views and the declared functions defined by DDL statements. A schema can be
+ * sealed, after which it never changes and can be read by many threads at the same time. Changes are then made to a
+ * copy of the schema.
+ */
+public class CosetteSchema implements Schema {
+
+    final HashMap<String, Table> tables = new LinkedHashMap<>();
+    final HashMap<String, Function> functions = new HashMap<>();
+    final List<CosetteView> views = new ArrayList<>();
+    private final HashMap<String, Table> foldedTables = new HashMap<>();
+    private final HashMap<String, Function> foldedFunctions = new HashMap<>();
+    private volatile SchemaPlus root;
+    private volatile boolean sealed = false;
+
+    /**
+     * Fold a name for case-insensitive lookup.
+     *
+     * @param name The given name.
+     * @return The folded name.
+     */
+    static String fold(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    void addTable(SqlCreateTable createTable) throws Exception {
+        checkMutable();
+        if (createTable.columnList == null) {
+            throw new Exception("No column in table " + createTable.name);
+        }
+        CosetteTable cosetteTable = new CosetteTable(this, createTable.name);
+
+        for (SqlNode column : createTable.columnList) {
+            switch (column.getKind()) {
+                case CHECK:
+                    cosetteTable.checkConstraints.add((SqlBasicCall) ((SqlCheckConstraint) column).getOperandList().get(1));
+                    break;
+                case COLUMN_DECL:
+                    SqlColumnDeclaration decl = (SqlColumnDeclaration) column;
+                    cosetteTable.addColumn(decl.name.toString(), SqlTypeName.get(decl.dataType.getTypeName().toString()),
+                            decl.strategy != ColumnStrategy.NOT_NULLABLE);
+                    break;
+                case FOREIGN_KEY:
+                    System.err.println("Foreign key constraint is not implemented in cosette yet.");
+                    break;
+                case PRIMARY_KEY:
+                case UNIQUE:
+                    SqlKeyConstraint cons = (SqlKeyConstraint) column;
+                    List<Integer> keys = new ArrayList<>();
+                    for (SqlNode id : (SqlNodeList) cons.getOperandList().get(1)) {
+                        int index = cosetteTable.columnOrdinal(id.toString());
+                        if (index < 0) {
+                            throw new Exception("Unknown key column " + id + " in table " + createTable.name);
+                        }
+                        keys.add(index);
+                        if (column.getKind() == SqlKind.PRIMARY_KEY) {
+                            cosetteTable.setNullable(index, false);
+                        }
+                    }
+                    cosetteTable.columnKeys.add(ImmutableBitSet.of(keys));
+                    break;
+                default:
+                    throw new Exception("Unsupported declaration type " + column.getKind() + " in table " + createTable.name);
+            }
+        }
+        addTable(cosetteTable);
+    }
+
+    /**
+     * Register a table, then validate again the views referring to a table or a view it replaces. If one of these
+     * views no longer validates, the previous table or view with the same name is restored. The check constraints of
+     * the table are derived the first time a query scans it.
+     *
+     * @param cosetteTable The given table.
+     */
+    void addTable(CosetteTable cosetteTable) throws Exception {
+        checkMutable();
+        String name = cosetteTable.id.toString();
+        List<CosetteView> previousViews = new ArrayList<>(views);
+        Table previous = tables.put(name, cosetteTable);
+        Table previousFolded = foldedTables.put(fold(name), cosetteTable);
+        try {
+            if (previous instanceof CosetteView) {
+                views.remove(previous);
+            }
+            revalidateDependents(name);
+        } catch (Exception e) {
+            restore(tables, name, previous);
+            restore(foldedTables, fold(name), previousFolded);
+            views.clear();
+            views.addAll(previousViews);
+            throw e;
+        }
+    }
+
+    /**
+     * Register tables restored together, such as the tables of a snapshot. Their check constraints are derived on first
+     * use, so that a constraint can refer to any of them, and to the functions declared before.
+     *
+     * @param restored The given tables.
+     */
+    void addTables(List<CosetteTable> restored) {
+        checkMutable();
+        for (CosetteTable cosetteTable : restored) {
+            tables.put(cosetteTable.id.toString(), cosetteTable);
+            foldedTables.put(fold(cosetteTable.id.toString()), cosetteTable);
+        }
+    }
+
+    /**
+     * Register a view defined by a CREATE VIEW statement. The query of the view is validated against the current state
+     * of the schema, and the view replaces any table or view with the same name.
+     *
+     * @param createView The given CREATE VIEW statement.
+     */
+    void addView(SqlCreateView createView) throws Exception {
+        List<String> columns = new ArrayList<>();
+        if (createView.columnList != null) {
+            for (SqlNode column : createView.columnList) {
+                columns.add(column.toString());
+            }
+        }
+        addView(new CosetteView(this, createView.name, createView.query.toString(), columns));
+    }
+
+    /**
+     * Validate and register a view, then validate again the views referring to a table or a view it replaces. Views
+     * are kept in the order they were last validated, which always comes after the views they refer to, so that a
+     * view can be restored after them. If one of the dependent views no longer validates, the previous table or view
+     * with the same name is restored.
+     *
+     * @param cosetteView The given view.
+     */
+    void addView(CosetteView cosetteView) throws Exception {
+        checkMutable();
+        cosetteView.define();
+        String name = cosetteView.id.toString();
+        List<CosetteView> previousViews = new ArrayList<>(views);
+        Table previous = tables.put(name, cosetteView);
+        Table previousFolded = foldedTables.put(fold(name), cosetteView);
+        if (previous instanceof CosetteView) {
+            views.remove(previous);
+        }
+        views.add(cosetteView);
+        try {
+            revalidateDependents(name);
+        } catch (Exception e) {
+            restore(tables, name, previous);
+            restore(foldedTables, fold(name), previousFolded);
+            views.clear();
+            views.addAll(previousViews);
+            throw e;
+        }
+    }
+
+    /**
+     * Validate again, in order, the views referring to a table or a view that has just been replaced, and the views
+     * referring to those in turn. A validated view replaces the previous one and moves to the end of the views. If a
+     * view no longer validates, the views replaced so far are restored and the change is rejected.
+     *
+     * @param name The name of the replaced table or view.
+     */
+    private void revalidateDependents(String name) throws Exception {
+        Set<String> changed = new HashSet<>();
+        changed.add(fold(name));
+        List<CosetteView> replaced = new ArrayList<>();
+        try {
+            for (CosetteView view : new ArrayList<>(views)) {
+                if (Collections.disjoint(view.getDependencies(), changed) || changed.contains(fold(view.id.toString()))) {
+                    continue;
+                }
+                CosetteView revalidated = new CosetteView(this, view.id, view.query, view.columnNames);
+                try {
+                    revalidated.define();
+                } catch (Exception e) {
+                    throw new Exception("View " + view.id + " depends on " + name + " and no longer validates: "
+                            + e.getMessage(), e);
+                }
+                String viewName = view.id.toString();
+                tables.put(viewName, revalidated);
+                foldedTables.put(fold(viewName), revalidated);
+                views.remove(view);
+                views.add(revalidated);
+                replaced.add(view);
+                changed.add(fold(viewName));
+            }
+        } catch (Exception e) {
+            for (CosetteView view : replaced) {
+                tables.put(view.id.toString(), view);
+                foldedTables.put(fold(view.id.toString()), view);
+            }
+            throw e;
+        }
+    }
+
+    private static void restore(Map<String, Table> map, String name, Table previous) {
+        if (previous == null) {
+            map.remove(name);
+        } else {
+            map.put(name, previous);
+        }
+    }
+
+    /**
+     * Create a copy of the schema. Tables and functions are shared with the copy, but adding to either schema does not
+     * affect the other one.
+     *
+     * @return The copy of the schema.
+     */
+    public CosetteSchema copy() {
+        CosetteSchema copy = new CosetteSchema();
+        copy.tables.putAll(tables);
+        copy.foldedTables.putAll(foldedTables);
+        copy.views.addAll(views);
+        copy.functions.putAll(functions);
+        copy.foldedFunctions.putAll(foldedFunctions);
+        return copy;
+    }
+
+    /**
+     * @return A rough estimate of the heap retained by the schema, in bytes.
+     */
+    long estimatedSize() {
+        long size = 1024 + 256L * functions.size();
+        for (Table table : tables.values()) {
+            if (table instanceof CosetteTable) {
+                size += 128 + ((CosetteTable) table).estimatedSize();
+            } else if (table instanceof CosetteView) {
+                size += 128 + ((CosetteView) table).estimatedSize();
+            } else {
+                size += 128 + 512;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Hash the current definition of a table or a view, so that a cached translation depending on it can tell whether
+     * it changed.
+     *
+     * @param name The given name.
+     * @return The hash of the definition, or an empty string if there is no such table or view.
+     */
+    String tableVersion(String name) {
+        Table table = getTable(name);
+        if (table instanceof CosetteTable) {
+            return TranslationCache.hash(((CosetteTable) table).describe());
+        } else if (table instanceof CosetteView) {
+            return TranslationCache.hash(((CosetteView) table).describe());
+        }
+        return table == null ? "" : TranslationCache.hash(table.toString());
+    }
+
+    /**
+     * Hash the current signature of a declared function.
+     *
+     * @param name The given name.
+     * @return The hash of the signature, or an empty string if there is no such function.
+     */
+    String functionVersion(String name) {
+        for (Function function : getFunctions(name)) {
+            if (function instanceof DeclaredFunction) {
+                SchemaGenerator.FunctionSignature signature = ((DeclaredFunction) function).signature;
+                return TranslationCache.hash((signature.aggregate ? "AGGREGATE " : "SCALAR ") + signature.identifier
+                        + signature.arguments + " " + signature.result);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Forbid any further change to the schema.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    private void checkMutable() {
+        if (sealed) {
+            throw new IllegalStateException("Cannot modify a sealed schema.");
+        }
+    }
+
+    void addFunction(String name, Function function) {
+        checkMutable();
+        functions.put(name, function);
+        foldedFunctions.put(fold(name), function);
+    }
+
+    /**
+     * Look up a table by its exact name, and then by its case-folded name. The root schema is built without caching,
+     * so every table lookup of the catalog reader ends up here.
+     *
+     * @param name The given name.
+     * @return The table, or null if there is no such table.
+     */
+    @Override
+    public Table getTable(String name) {
+        Table table = tables.get(name);
+        return table != null ? table : foldedTables.get(fold(name));
+    }
+
+    @Override
+    public Set<String> getTableNames() {
+        return tables.keySet();
+    }
+
+    @Override
+    public Set<String> getFunctionNames() {
+        return functions.keySet();
+    }
+
+    /**
+     * Look up a declared function by its exact name, and then by its case-folded name.
+     *
+     * @param name The given name.
+     * @return The matching functions.
+     */
+    @Override
+    public Collection<Function> getFunctions(String name) {
+        Function function = functions.get(name);
+        if (function == null) {
+            function = foldedFunctions.get(fold(name));
+        }
+        return function == null ? ImmutableList.of() : ImmutableList.of(function);
+    }
+
+    @Override
+    public RelProtoDataType getType(String name) {
+        return null;
+    }
+
+    @Override
+    public Set<String> getTypeNames() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public Schema getSubSchema(String name) {
+        return null;
+    }
+
+    @Override
+    public Set<String> getSubSchemaNames() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public Expression getExpression(SchemaPlus parentSchema, String name) {
+        return Schemas.subSchemaExpression(parentSchema, name, getClass());
+    }
+
+    @Override
+    public boolean isMutable() {
+        return !sealed;
+    }
+
+    @Override
+    public Schema snapshot(SchemaVersion version) {
+        return this;
+    }
+
+    /**
+     * The root schema delegates every lookup to this schema, so it is built once and shared by all planners.
+     *
+     * @return The root schema wrapping this schema.
+     */
+    public SchemaPlus plus() {
+        SchemaPlus current = root;
+        if (current == null) {
+            current = CalciteSchema.createRootSchema(true, false, "Cosette", this).plus();
+            root = current;
+        }
+        return current;
+    }
+
+}
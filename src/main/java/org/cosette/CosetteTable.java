@@ -0,0 +1,255 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.rex.RexVisitor;
+import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.util.*;
+
+/**
+ * A CosetteTable instance is a table defined by a CREATE TABLE statement. Its columns are stored in parallel arrays
+ * with an index from column names to ordinals.
+ */
+class CosetteTable extends AbstractTable {
+
+    private static final ObjectMapper checkMapper = new ObjectMapper();
+
+    final CosetteSchema owner;
+    final List<SqlBasicCall> checkConstraints = new ArrayList<>();
+    final Set<ImmutableBitSet> columnKeys = new HashSet<>();
+    final SqlIdentifier id;
+    private final Map<String, Integer> columnOrdinals = new HashMap<>();
+    private final BitSet columnNullabilities = new BitSet();
+    private final Map<RelDataTypeFactory, RelDataType> rowTypes = Collections.synchronizedMap(new WeakHashMap<>());
+    private String[] columnNames = new String[8];
+    private SqlTypeName[] columnTypeNames = new SqlTypeName[8];
+    private int columnCount = 0;
+    private List<RexNode> derivedCheckConstraints = null;
+    private List<ObjectNode> translatedCheckConstraints = null;
+    private Exception invalidCheckConstraint = null;
+
+    public CosetteTable(CosetteSchema schema, SqlIdentifier name) {
+        owner = schema;
+        id = name;
+    }
+
+    /**
+     * Append a column to the table.
+     *
+     * @param name     The name of the column.
+     * @param typeName The type of the column.
+     * @param nullable Whether the column is nullable.
+     */
+    public void addColumn(String name, SqlTypeName typeName, boolean nullable) {
+        if (columnCount == columnNames.length) {
+            columnNames = Arrays.copyOf(columnNames, columnCount * 2);
+            columnTypeNames = Arrays.copyOf(columnTypeNames, columnCount * 2);
+        }
+        columnNames[columnCount] = name;
+        columnTypeNames[columnCount] = typeName;
+        columnNullabilities.set(columnCount, nullable);
+        columnOrdinals.putIfAbsent(name, columnCount);
+        columnCount += 1;
+        rowTypes.clear();
+    }
+
+    /**
+     * @param name The name of a column.
+     * @return The ordinal of the first column with the given name, or -1 if there is no such column.
+     */
+    public int columnOrdinal(String name) {
+        return columnOrdinals.getOrDefault(name, -1);
+    }
+
+    public int columnCount() {
+        return columnCount;
+    }
+
+    public String columnName(int ordinal) {
+        return columnNames[ordinal];
+    }
+
+    public SqlTypeName columnTypeName(int ordinal) {
+        return columnTypeNames[ordinal];
+    }
+
+    public boolean isNullable(int ordinal) {
+        return columnNullabilities.get(ordinal);
+    }
+
+    public void setNullable(int ordinal, boolean nullable) {
+        columnNullabilities.set(ordinal, nullable);
+        rowTypes.clear();
+    }
+
+    /**
+     * The row type is built once for every type factory that asks for it. The planners of all statements share one
+     * type factory, so the row type is usually built once.
+     *
+     * @param typeFactory The given type factory.
+     * @return The row type of the table.
+     */
+    @Override
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return rowTypes.computeIfAbsent(typeFactory, this::deriveRowType);
+    }
+
+    private RelDataType deriveRowType(RelDataTypeFactory typeFactory) {
+        List<RelDataType> fields = new ArrayList<>(columnCount);
+        for (int index = 0; index < columnCount; index += 1) {
+            fields.add(typeFactory.createTypeWithNullability(typeFactory.createSqlType(columnTypeNames[index]), columnNullabilities.get(index)));
+        }
+        return typeFactory.createStructType(fields, Arrays.asList(Arrays.copyOf(columnNames, columnCount)));
+    }
+
+    @Override
+    public Statistic getStatistic() {
+        return Statistics.of(0, new ArrayList<>(columnKeys));
+    }
+
+    /**
+     * Derive the check constraints of the table, together with their translations in JSON format. This is done once,
+     * the first time a query scans the table, so that tables that are never queried cost nothing to define; a failure
+     * is kept and reported again on every later use. The translation of a constraint with sub-queries depends on the
+     * tables referenced by the output, so it is left to be done when the schemas are dumped.
+     */
+    synchronized void deriveCheckConstraints() throws Exception {
+        if (derivedCheckConstraints != null) {
+            return;
+        }
+        if (invalidCheckConstraint != null) {
+            throw invalidCheckConstraint;
+        }
+        List<RexNode> derivedConstraints = new ArrayList<>();
+        List<ObjectNode> translatedConstraints = new ArrayList<>();
+        if (!checkConstraints.isEmpty()) {
+            RawPlanner planner = new RawPlanner(owner.plus());
+            for (SqlBasicCall check : checkConstraints) {
+                SqlSelect wrapper = new SqlSelect(SqlParserPos.ZERO, SqlNodeList.EMPTY, SqlNodeList.SINGLETON_STAR,
+                        this.id, check, null, null, SqlNodeList.EMPTY, null, null, null, null);
+                RexNode condition;
+                try {
+                    planner.parse(wrapper.toString());
+                    LogicalFilter filter = (LogicalFilter) planner.rel(check).project().getInput(0);
+                    condition = filter.getCondition();
+                } catch (Exception e) {
+                    invalidCheckConstraint = new Exception("Invalid check constraint " + check + " in table " + id + ": " + e.getMessage(), e);
+                    throw invalidCheckConstraint;
+                }
+                derivedConstraints.add(condition);
+                if (RexUtil.SubQueryFinder.find(condition) == null) {
+                    Environment checkEnvironment = new Environment(checkMapper, new ArrayList<>());
+                    translatedConstraints.add(condition.accept(new RexJSONVisitor(checkEnvironment, columnCount)));
+                } else {
+                    translatedConstraints.add(null);
+                }
+            }
+        }
+        translatedCheckConstraints = Collections.unmodifiableList(translatedConstraints);
+        derivedCheckConstraints = Collections.unmodifiableList(derivedConstraints);
+    }
+
+    /**
+     * Derive the check constraints of the given tables, and of the tables scanned by the sub-queries of these
+     * constraints in turn, which are dumped along with them.
+     *
+     * @param relOptTables The given tables.
+     */
+    static void deriveCheckConstraints(Collection<RelOptTable> relOptTables) throws Exception {
+        Deque<RelOptTable> pending = new ArrayDeque<>(relOptTables);
+        Set<CosetteTable> derived = new HashSet<>();
+        RexVisitor<Void> subQueryTables = new RexVisitorImpl<Void>(true) {
+            @Override
+            public Void visitSubQuery(RexSubQuery subQuery) {
+                pending.addAll(RelOptUtil.findAllTables(subQuery.rel));
+                return super.visitSubQuery(subQuery);
+            }
+        };
+        while (!pending.isEmpty()) {
+            CosetteTable cosetteTable = pending.pop().unwrap(CosetteTable.class);
+            if (cosetteTable == null || !derived.add(cosetteTable)) {
+                continue;
+            }
+            cosetteTable.deriveCheckConstraints();
+            for (RexNode check : cosetteTable.derivedCheckConstraints) {
+                check.accept(subQueryTables);
+            }
+        }
+    }
+
+    /**
+     * @return The check constraints of the table, derived on first use.
+     */
+    public List<RexNode> getCheckConstraints() {
+        try {
+            deriveCheckConstraints();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return derivedCheckConstraints;
+    }
+
+    /**
+     * @return The JSON translations of the derived check constraints, with null in place of the constraints that have
+     * to be translated along with the other tables in the output. The returned nodes are shared and must not be
+     * modified.
+     */
+    public List<ObjectNode> getTranslatedCheckConstraints() {
+        getCheckConstraints();
+        return translatedCheckConstraints;
+    }
+
+    /**
+     * @return The definition of the table as text, listing its columns, its keys and its check constraints.
+     */
+    String describe() {
+        StringBuilder builder = new StringBuilder("TABLE ").append(id).append(" (");
+        for (int index = 0; index < columnCount; index += 1) {
+            builder.append(columnNames[index]).append(' ').append(columnTypeNames[index])
+                    .append(columnNullabilities.get(index) ? " NULL, " : " NOT NULL, ");
+        }
+        List<String> keys = new ArrayList<>();
+        for (ImmutableBitSet key : columnKeys) {
+            keys.add(key.toString());
+        }
+        Collections.sort(keys);
+        builder.append("KEYS ").append(keys);
+        for (SqlBasicCall check : checkConstraints) {
+            builder.append(", CHECK ").append(check);
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * @return A rough estimate of the heap retained by the table, in bytes.
+     */
+    long estimatedSize() {
+        long size = 512;
+        for (int index = 0; index < columnCount; index += 1) {
+            size += 64 + 2L * columnNames[index].length();
+        }
+        size += 64L * columnKeys.size();
+        size += 2048L * checkConstraints.size();
+        return size;
+    }
+
+}
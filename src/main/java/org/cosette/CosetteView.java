@@ -0,0 +1,145 @@
+package org.cosette;
+
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.TranslatableTable;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.validate.SqlValidator;
+import org.apache.calcite.sql2rel.SqlToRelConverter;
+import org.apache.calcite.util.Util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A CosetteView instance is a view defined by a CREATE VIEW statement. Its body is parsed and validated once, when the
+ * view is added to its schema, and the validated body is kept with the validator that validated it. Every query
+ * referring to the view converts the kept body in its own cluster, without parsing or validating it again, so the
+ * expanded view can be translated like any other part of the query. The view also records the tables and the views
+ * its body refers to, so that its schema can validate it again when one of them changes.
+ */
+class CosetteView extends AbstractTable implements TranslatableTable {
+
+    final CosetteSchema owner;
+    final SqlIdentifier id;
+    final String query;
+    final List<String> columnNames;
+    private SqlValidator validator;
+    private SqlNode body;
+    private RelDataType rowType;
+    private Set<String> dependencies;
+
+    /**
+     * Create a view that is not validated yet.
+     *
+     * @param schema  The schema the view is defined in.
+     * @param name    The name of the view.
+     * @param body    The query of the view.
+     * @param columns The names of the columns of the view, or an empty list to use the names of the query.
+     */
+    CosetteView(CosetteSchema schema, SqlIdentifier name, String body, List<String> columns) {
+        owner = schema;
+        id = name;
+        query = body;
+        columnNames = List.copyOf(columns);
+    }
+
+    /**
+     * Parse and validate the query of the view against the current state of its schema, and derive its row type. The
+     * query is also converted once, which finds the tables it scans and the views it expands, directly or through other
+     * views.
+     */
+    void define() throws Exception {
+        RawPlanner planner = new RawPlanner(owner.plus());
+        SqlNode validated;
+        Set<String> referenced = new HashSet<>();
+        try {
+            validated = planner.parse(query);
+            for (RelOptTable table : RelOptUtil.findAllTables(planner.rel(validated).rel)) {
+                referenced.add(CosetteSchema.fold(Util.last(table.getQualifiedName())));
+            }
+        } catch (Exception e) {
+            throw new Exception("Invalid query in view " + id + ": " + e.getMessage(), e);
+        }
+        for (String view : planner.getExpandedViews()) {
+            referenced.add(CosetteSchema.fold(view));
+        }
+        if (referenced.contains(CosetteSchema.fold(id.toString()))) {
+            throw new Exception("View " + id + " refers to itself");
+        }
+        RelDataType validatedType = planner.getValidator().getValidatedNodeType(validated);
+        if (!columnNames.isEmpty()) {
+            if (columnNames.size() != validatedType.getFieldCount()) {
+                throw new Exception("View " + id + " has " + columnNames.size() + " columns but its query returns "
+                        + validatedType.getFieldCount());
+            }
+            validatedType = planner.getTypeFactory().createStructType(RelOptUtil.getFieldTypeList(validatedType),
+                    columnNames);
+        }
+        validator = planner.getValidator();
+        body = validated;
+        rowType = validatedType;
+        dependencies = Set.copyOf(referenced);
+    }
+
+    /**
+     * @return The case-folded names of the tables and the views the query of the view refers to.
+     */
+    Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    @Override
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return typeFactory.copyType(rowType);
+    }
+
+    /**
+     * Expand the view through the planner converting the referring query, which converts the validated body kept by
+     * the view.
+     *
+     * @param context     The given context.
+     * @param relOptTable The table referring to the view.
+     * @return The expanded view, with the column names of the view.
+     */
+    @Override
+    public RelNode toRel(RelOptTable.ToRelContext context, RelOptTable relOptTable) {
+        RelRoot root = context.expandView(relOptTable.getRowType(), query, List.of(), relOptTable.getQualifiedName());
+        return RelOptUtil.createCastRel(root.project(), relOptTable.getRowType(), true);
+    }
+
+    /**
+     * Convert the validated body of the view. The validator is not meant to be used by many converters at the same
+     * time, so conversions of the same view are serialized. The schema validates the view again whenever a table or a
+     * view it refers to changes, so the kept body always matches the tables the converter resolves.
+     *
+     * @param converters Creates a converter in the cluster of the referring query from the validator of the view.
+     * @return The converted body.
+     */
+    synchronized RelRoot convert(Function<SqlValidator, SqlToRelConverter> converters) {
+        return converters.apply(validator).convertQuery(body, false, false);
+    }
+
+    /**
+     * @return The definition of the view as text.
+     */
+    String describe() {
+        return "VIEW " + id + " " + columnNames + " AS " + query;
+    }
+
+    /**
+     * @return A rough estimate of the heap retained by the view, in bytes.
+     */
+    long estimatedSize() {
+        return 8192 + 64L * query.length();
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.cosette;
+
+/**
+ * A Deadline instance bounds the time spent on a single statement. It is checked cooperatively while a statement is
+ * validated, converted, normalized and translated, and can also be cancelled from another thread.
+ */
+public class Deadline {
+
+    private final long budget;
+    private final long expiry;
+    private volatile boolean cancelled = false;
+
+    private Deadline(long millis, long nanos) {
+        budget = millis;
+        expiry = nanos;
+    }
+
+    /**
+     * Create a deadline that expires after the given budget.
+     *
+     * @param millis The given budget in milliseconds, or 0 for no budget.
+     * @return The created deadline.
+     */
+    public static Deadline after(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Statement timeout must not be negative.");
+        }
+        if (millis == 0) {
+            return new Deadline(0, Long.MAX_VALUE);
+        }
+        return new Deadline(millis, System.nanoTime() + millis * 1_000_000L);
+    }
+
+    /**
+     * Cancel the statement guarded by this deadline. The statement stops at its next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return Whether the deadline has expired or has been cancelled.
+     */
+    public boolean isExpired() {
+        return cancelled || (expiry != Long.MAX_VALUE && System.nanoTime() - expiry >= 0);
+    }
+
+    /**
+     * Stop the current statement if the deadline has expired or has been cancelled.
+     */
+    void check() {
+        if (isExpired()) {
+            throw new StatementTimeoutException(cancelled
+                    ? "Statement cancelled."
+                    : "Statement exceeded its time budget of " + budget + " ms.");
+        }
+    }
+
+    /**
+     * Thrown when a statement is stopped by its deadline.
+     */
+    public static class StatementTimeoutException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        StatementTimeoutException(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.cosette;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.AggregateFunction;
+import org.apache.calcite.schema.Function;
+import org.apache.calcite.schema.FunctionParameter;
+import org.apache.calcite.schema.ScalarFunction;
+
+import java.util.List;
+
+/**
+ * A custom function introduced by a DECLARE FUNCTION statement. Its parameters are built once from the declared
+ * signature, so no reflection is needed to register or to resolve the function.
+ */
+abstract class DeclaredFunction implements Function {
+
+    final SchemaGenerator.FunctionSignature signature;
+    private final List<FunctionParameter> parameters;
+    private final Class<?> result;
+
+    private DeclaredFunction(SchemaGenerator.FunctionSignature declared, List<Class<?>> arguments, Class<?> target) {
+        signature = declared;
+        result = target;
+        ImmutableList.Builder<FunctionParameter> builder = ImmutableList.builder();
+        for (int index = 0; index < arguments.size(); index += 1) {
+            builder.add(new DeclaredParameter(index, arguments.get(index)));
+        }
+        parameters = builder.build();
+    }
+
+    /**
+     * Create a custom function from its signature.
+     *
+     * @param signature The declared signature.
+     * @param arguments The Java types of the arguments.
+     * @param result    The Java type of the result.
+     * @return A scalar or an aggregate function, depending on the signature.
+     */
+    static DeclaredFunction create(SchemaGenerator.FunctionSignature signature, List<Class<?>> arguments, Class<?> result) {
+        if (signature.aggregate) {
+            return new Aggregate(signature, arguments, result);
+        }
+        return new Scalar(signature, arguments, result);
+    }
+
+    @Override
+    public List<FunctionParameter> getParameters() {
+        return parameters;
+    }
+
+    public RelDataType getReturnType(RelDataTypeFactory typeFactory) {
+        return typeFactory.createJavaType(result);
+    }
+
+    static final class Scalar extends DeclaredFunction implements ScalarFunction {
+
+        private Scalar(SchemaGenerator.FunctionSignature declared, List<Class<?>> arguments, Class<?> target) {
+            super(declared, arguments, target);
+        }
+
+    }
+
+    static final class Aggregate extends DeclaredFunction implements AggregateFunction {
+
+        private Aggregate(SchemaGenerator.FunctionSignature declared, List<Class<?>> arguments, Class<?> target) {
+            super(declared, arguments, target);
+        }
+
+    }
+
+    private static final class DeclaredParameter implements FunctionParameter {
+
+        private final int ordinal;
+        private final Class<?> type;
+
+        private DeclaredParameter(int position, Class<?> clazz) {
+            ordinal = position;
+            type = clazz;
+        }
+
+        @Override
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        @Override
+        public String getName() {
+            return "arg" + ordinal;
+        }
+
+        @Override
+        public RelDataType getType(RelDataTypeFactory typeFactory) {
+            return typeFactory.createJavaType(type);
+        }
+
+        @Override
+        public boolean isOptional() {
+            return false;
+        }
+
+    }
+
+}
@@ -5,28 +5,40 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.rel.core.CorrelationId;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * AN Environment instance keeps track of the environment when a RelJSONShuttle instance is travelling through a RelNode
  * or when a RexJSONVisitor is visiting a RexNode. It can record all RelOptTable instances it has seen, and can provide
- * all level information for correlation variables.
+ * all level information for correlation variables. The tables and the declared functions identified while translating
+ * a query are the dependencies of its translation.
  */
 public class Environment {
 
     private final List<RelOptTable> relOptTables;
+    private final Set<RelOptTable> referencedTables;
+    private final Set<String> referencedFunctions;
     private final ObjectMapper relMapper;
     private final HashMap<CorrelationId, Integer> environment;
     private final int level;
+    private final boolean columnarValues;
+    private final Deadline deadline;
 
-    private Environment(ObjectMapper mapper, List<RelOptTable> schemas, HashMap<CorrelationId, Integer> existing, int base) {
+    private Environment(ObjectMapper mapper, List<RelOptTable> schemas, Set<RelOptTable> tables, Set<String> functions,
+                        HashMap<CorrelationId, Integer> existing, int base, boolean columnar, Deadline limit) {
         relMapper = mapper;
         relOptTables = schemas;
+        referencedTables = tables;
+        referencedFunctions = functions;
         environment = existing;
         level = base;
+        columnarValues = columnar;
+        deadline = limit;
     }
 
     /**
@@ -36,30 +48,81 @@ public class Environment {
      * @param schemas A list of tables as input reference.
      */
     public Environment(ObjectMapper mapper, List<RelOptTable> schemas) {
-        this(mapper, schemas, new HashMap<>(), 0);
+        this(mapper, schemas, false);
     }
 
     /**
+     * Create a new environment with no correlation information, choosing how values are output.
+     *
+     * @param mapper   A ObjectMapper instance that could be used to generate JSON.
+     * @param schemas  A list of tables as input reference.
+     * @param columnar Whether the tuples of a LogicalValues node are output column by column.
+     */
+    public Environment(ObjectMapper mapper, List<RelOptTable> schemas, boolean columnar) {
+        this(mapper, schemas, columnar, Deadline.after(0));
+    }
+
+    /**
+     * Create a new environment with no correlation information, whose translation stops once the given deadline
+     * expires.
+     *
+     * @param mapper   A ObjectMapper instance that could be used to generate JSON.
+     * @param schemas  A list of tables as input reference.
+     * @param columnar Whether the tuples of a LogicalValues node are output column by column.
+     * @param limit    The given deadline.
+     */
+    public Environment(ObjectMapper mapper, List<RelOptTable> schemas, boolean columnar, Deadline limit) {
+        this(mapper, schemas, new LinkedHashSet<>(), new LinkedHashSet<>(), new HashMap<>(), 0, columnar, limit);
+    }
+
+    /**
+     * Create a new node, stopping the translation if the deadline has expired.
+     *
      * @return A new ObjectNode instance
      */
     public ObjectNode createNode() {
+        deadline.check();
         return relMapper.createObjectNode();
     }
 
     /**
      * Find the index of the given table in the reference. If it is not currently in the reference, append it to the end
-     * and return its index.
+     * and return its index. The table is also recorded as a dependency of the translation.
      *
      * @param table The RelOptTable instance to be located.
      * @return The index of the given RelOptTable instance.
      */
     public int identifyTable(RelOptTable table) {
+        referencedTables.add(table);
         if (!relOptTables.contains(table)) {
             relOptTables.add(table);
         }
         return relOptTables.indexOf(table);
     }
 
+    /**
+     * Record a declared function as a dependency of the translation.
+     *
+     * @param name The name of the function.
+     */
+    public void identifyFunction(String name) {
+        referencedFunctions.add(name);
+    }
+
+    /**
+     * @return The tables identified since the environment was created, in the order they were first identified.
+     */
+    public List<RelOptTable> getReferencedTables() {
+        return new ArrayList<>(referencedTables);
+    }
+
+    /**
+     * @return The names of the declared functions identified since the environment was created.
+     */
+    public Set<String> getReferencedFunctions() {
+        return referencedFunctions;
+    }
+
     /**
      * @return The RelOptTable list that includes the given reference and all additional RelOptTable instances that has
      * been looked up for.
@@ -81,7 +144,8 @@ public class Environment {
         if (id != null) {
             copy.put(id, level);
         }
-        return new Environment(relMapper, relOptTables, copy, level + delta);
+        return new Environment(relMapper, relOptTables, referencedTables, referencedFunctions, copy, level + delta,
+                columnarValues, deadline);
     }
 
     /**
@@ -121,4 +185,11 @@ public class Environment {
         return level;
     }
 
+    /**
+     * @return Whether the tuples of a LogicalValues node are output column by column.
+     */
+    public boolean isColumnarValues() {
+        return columnarValues;
+    }
+
 }
@@ -0,0 +1,119 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Stable 64-bit structural hashes of translated JSON trees. The hash depends on the order of fields and elements, so
+ * structurally different plans, such as joins with swapped inputs, get different fingerprints. Table scans in queries
+ * are hashed through the fingerprints of their tables rather than their file-local indices, so the fingerprint of a
+ * query does not depend on the other queries in the same file.
+ */
+final class Fingerprint {
+
+    private static final long PRIME = 0x100000001b3L;
+    private static final long OFFSET = 0xcbf29ce484222325L;
+
+    private final long[] tables;
+    private long state = OFFSET;
+
+    private Fingerprint(long[] tableFingerprints) {
+        tables = tableFingerprints;
+    }
+
+    /**
+     * Hash a JSON tree as it is.
+     *
+     * @param node The given JSON tree.
+     * @return The fingerprint.
+     */
+    static long of(JsonNode node) {
+        return of(node, null);
+    }
+
+    /**
+     * Hash a translated query, replacing table indices by the fingerprints of the tables.
+     *
+     * @param query  The given translated query.
+     * @param tables The fingerprints of the tables, indexed as in the schemas section.
+     * @return The fingerprint.
+     */
+    static long of(JsonNode query, long[] tables) {
+        Fingerprint fingerprint = new Fingerprint(tables);
+        fingerprint.visit(query);
+        return finish(fingerprint.state);
+    }
+
+    /**
+     * @param fingerprint The given fingerprint.
+     * @return The fingerprint as 16 hexadecimal digits.
+     */
+    static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    private void visit(JsonNode node) {
+        if (node.isObject()) {
+            mix('O');
+            mix(node.size());
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                mix(field.getKey());
+                if (tables != null && field.getKey().equals("scan") && field.getValue().isInt()
+                        && field.getValue().intValue() < tables.length) {
+                    mix('T');
+                    mix(tables[field.getValue().intValue()]);
+                } else {
+                    visit(field.getValue());
+                }
+            }
+        } else if (node.isArray()) {
+            mix('A');
+            mix(node.size());
+            for (JsonNode element : node) {
+                visit(element);
+            }
+        } else if (node.isTextual()) {
+            mix('S');
+            mix(node.asText());
+        } else if (node.isIntegralNumber()) {
+            mix('I');
+            mix(node.longValue());
+        } else if (node.isNumber()) {
+            mix('D');
+            mix(Double.doubleToLongBits(node.doubleValue()));
+        } else if (node.isBoolean()) {
+            mix(node.booleanValue() ? 'Y' : 'N');
+        } else {
+            mix('Z');
+        }
+    }
+
+    private void mix(String string) {
+        mix(string.length());
+        for (int index = 0; index < string.length(); index += 1) {
+            state = (state ^ string.charAt(index)) * PRIME;
+        }
+    }
+
+    private void mix(long word) {
+        state = (state ^ word) * PRIME;
+        state = Long.rotateLeft(state, 31);
+    }
+
+    /**
+     * Spread the bits of the state, so that similar trees get unrelated fingerprints.
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
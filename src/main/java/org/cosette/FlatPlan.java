@@ -0,0 +1,387 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A flat, index-addressed encoding of a translation. Every node of the JSON tree is a slot in four parallel int
+ * tables: its tag, the interned name of the field holding it, its value and its number of children. The children of an
+ * object or an array are laid out contiguously, and the value of the container is the index of its first child. Node 0
+ * is the root. In a query, the field name of a rel or rex node is its operator, and columns and types are INT and
+ * STRING nodes, so a consumer can walk a plan by index without building a tree.
+ * <p>
+ * File layout, in big-endian order: magic, version, node count, string count, wide count, then the tag, name, value and
+ * count tables, the wide table of long and double values, the string offset table and the UTF-8 string bytes. Numbers
+ * are stored exactly: a float is kept in the value table, and decimals and big integers are kept as interned strings.
+ * A read plan is backed by a memory-mapped buffer and decodes nothing until it is accessed.
+ */
+public final class FlatPlan {
+
+    public static final int OBJECT = 0;
+    public static final int ARRAY = 1;
+    public static final int STRING = 2;
+    public static final int INT = 3;
+    public static final int LONG = 4;
+    public static final int DOUBLE = 5;
+    public static final int BOOLEAN = 6;
+    public static final int NULL = 7;
+    public static final int DECIMAL = 8;
+    public static final int BIG_INTEGER = 9;
+    public static final int FLOAT = 10;
+
+    private static final int MAGIC = 0x434F5346;
+    private static final int VERSION = 2;
+    private static final int HEADER = 20;
+    private static final int NONE = -1;
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.withExactBigDecimals(true);
+
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int stringCount;
+    private final int wideCount;
+
+    private FlatPlan(ByteBuffer content) throws IOException {
+        buffer = content;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a flat plan.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported flat plan version " + buffer.getInt(4) + ".");
+        }
+        nodeCount = buffer.getInt(8);
+        stringCount = buffer.getInt(12);
+        wideCount = buffer.getInt(16);
+    }
+
+    /**
+     * Encode a JSON tree.
+     *
+     * @param root The given JSON tree.
+     * @return The encoded plan.
+     */
+    public static FlatPlan of(JsonNode root) {
+        List<JsonNode> nodes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        nodes.add(root);
+        names.add(null);
+        List<Integer> firsts = new ArrayList<>();
+        for (int index = 0; index < nodes.size(); index += 1) {
+            JsonNode node = nodes.get(index);
+            firsts.add(nodes.size());
+            if (node.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    nodes.add(field.getValue());
+                    names.add(field.getKey());
+                }
+            } else if (node.isArray()) {
+                for (JsonNode element : node) {
+                    nodes.add(element);
+                    names.add(null);
+                }
+            }
+        }
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<Long> wides = new ArrayList<>();
+        int[] tags = new int[nodes.size()];
+        int[] nameIndices = new int[nodes.size()];
+        int[] values = new int[nodes.size()];
+        int[] counts = new int[nodes.size()];
+        for (int index = 0; index < nodes.size(); index += 1) {
+            JsonNode node = nodes.get(index);
+            nameIndices[index] = names.get(index) == null ? NONE : intern(strings, names.get(index));
+            if (node.isObject() || node.isArray()) {
+                tags[index] = node.isObject() ? OBJECT : ARRAY;
+                values[index] = firsts.get(index);
+                counts[index] = node.size();
+            } else if (node.isTextual()) {
+                tags[index] = STRING;
+                values[index] = intern(strings, node.asText());
+            } else if (node.isInt()) {
+                tags[index] = INT;
+                values[index] = node.intValue();
+            } else if (node.isBigInteger()) {
+                tags[index] = BIG_INTEGER;
+                values[index] = intern(strings, node.bigIntegerValue().toString());
+            } else if (node.isIntegralNumber()) {
+                tags[index] = LONG;
+                values[index] = wides.size();
+                wides.add(node.longValue());
+            } else if (node.isBigDecimal()) {
+                tags[index] = DECIMAL;
+                values[index] = intern(strings, node.decimalValue().toString());
+            } else if (node.isFloat()) {
+                tags[index] = FLOAT;
+                values[index] = Float.floatToRawIntBits(node.floatValue());
+            } else if (node.isNumber()) {
+                tags[index] = DOUBLE;
+                values[index] = wides.size();
+                wides.add(Double.doubleToRawLongBits(node.doubleValue()));
+            } else if (node.isBoolean()) {
+                tags[index] = BOOLEAN;
+                values[index] = node.booleanValue() ? 1 : 0;
+            } else {
+                tags[index] = NULL;
+            }
+        }
+
+        List<byte[]> encoded = new ArrayList<>();
+        int stringBytes = 0;
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            stringBytes += bytes.length;
+        }
+        ByteBuffer content = ByteBuffer.allocate(HEADER + 16 * nodes.size() + 8 * wides.size()
+                + 4 * (strings.size() + 1) + stringBytes);
+        content.putInt(MAGIC).putInt(VERSION).putInt(nodes.size()).putInt(strings.size()).putInt(wides.size());
+        for (int[] table : new int[][]{tags, nameIndices, values, counts}) {
+            for (int entry : table) {
+                content.putInt(entry);
+            }
+        }
+        for (long wide : wides) {
+            content.putLong(wide);
+        }
+        int offset = 0;
+        content.putInt(offset);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            content.putInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            content.put(bytes);
+        }
+        try {
+            return new FlatPlan(content);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Map a plan file.
+     *
+     * @param file The given file.
+     * @return The plan backed by the mapped file.
+     */
+    public static FlatPlan read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new FlatPlan(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static int intern(Map<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+
+    /**
+     * Write the plan to a file.
+     *
+     * @param file The given file.
+     */
+    public void write(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = buffer.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The tag of the node.
+     */
+    public int tag(int node) {
+        return buffer.getInt(HEADER + 4 * node);
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The field name of the node in its parent object, or null if the parent is not an object.
+     */
+    public String name(int node) {
+        int name = buffer.getInt(HEADER + 4 * (nodeCount + node));
+        return name == NONE ? null : string(name);
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The number of children of an object or an array node, or 0 otherwise.
+     */
+    public int count(int node) {
+        return buffer.getInt(HEADER + 4 * (3 * nodeCount + node));
+    }
+
+    /**
+     * @param node  The given node index.
+     * @param child The position of the child.
+     * @return The index of the given child of an object or an array node.
+     */
+    public int child(int node, int child) {
+        return value(node) + child;
+    }
+
+    /**
+     * Find a field of an object node.
+     *
+     * @param node The given node index.
+     * @param name The name of the field.
+     * @return The index of the field, or -1 if the object has no such field.
+     */
+    public int field(int node, String name) {
+        for (int child = 0; child < count(node); child += 1) {
+            if (name.equals(name(child(node, child)))) {
+                return child(node, child);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of an INT or a BOOLEAN node.
+     */
+    public int intValue(int node) {
+        return value(node);
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a STRING node.
+     */
+    public String stringValue(int node) {
+        return string(value(node));
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a LONG node.
+     */
+    public long longValue(int node) {
+        return wide(value(node));
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a DOUBLE node.
+     */
+    public double doubleValue(int node) {
+        return Double.longBitsToDouble(wide(value(node)));
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a FLOAT node.
+     */
+    public float floatValue(int node) {
+        return Float.intBitsToFloat(value(node));
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a DECIMAL node.
+     */
+    public BigDecimal decimalValue(int node) {
+        return new BigDecimal(string(value(node)));
+    }
+
+    /**
+     * @param node The given node index.
+     * @return The value of a BIG_INTEGER node.
+     */
+    public BigInteger bigIntegerValue(int node) {
+        return new BigInteger(string(value(node)));
+    }
+
+    private int value(int node) {
+        return buffer.getInt(HEADER + 4 * (2 * nodeCount + node));
+    }
+
+    private long wide(int index) {
+        return buffer.getLong(HEADER + 16 * nodeCount + 8 * index);
+    }
+
+    private String string(int index) {
+        int offsets = HEADER + 16 * nodeCount + 8 * wideCount;
+        int start = buffer.getInt(offsets + 4 * index);
+        int end = buffer.getInt(offsets + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsets + 4 * (stringCount + 1) + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode the plan back to a JSON tree.
+     *
+     * @return The decoded JSON tree.
+     */
+    public JsonNode toJSON() {
+        return toJSON(0);
+    }
+
+    private JsonNode toJSON(int node) {
+        JsonNodeFactory factory = FACTORY;
+        switch (tag(node)) {
+            case OBJECT:
+                ObjectNode object = factory.objectNode();
+                for (int child = 0; child < count(node); child += 1) {
+                    object.set(name(child(node, child)), toJSON(child(node, child)));
+                }
+                return object;
+            case ARRAY:
+                ArrayNode array = factory.arrayNode();
+                for (int child = 0; child < count(node); child += 1) {
+                    array.add(toJSON(child(node, child)));
+                }
+                return array;
+            case STRING:
+                return factory.textNode(stringValue(node));
+            case INT:
+                return factory.numberNode(intValue(node));
+            case LONG:
+                return factory.numberNode(longValue(node));
+            case DOUBLE:
+                return factory.numberNode(doubleValue(node));
+            case FLOAT:
+                return factory.numberNode(floatValue(node));
+            case DECIMAL:
+                return factory.numberNode(decimalValue(node));
+            case BIG_INTEGER:
+                return factory.numberNode(bigIntegerValue(node));
+            case BOOLEAN:
+                return factory.booleanNode(intValue(node) != 0);
+            default:
+                return factory.nullNode();
+        }
+    }
+
+}
@@ -1,10 +1,12 @@
 package org.cosette;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,8 +18,73 @@ import java.util.regex.Pattern;
 public class Main {
 
     public static void main(String[] args) {
-        for (String filename : args) {
-            parseFile(filename);
+        TranslationOptions options = TranslationOptions.DEFAULT;
+        String bundlePath = null;
+        boolean sharedSchemas = false;
+        OutputFormat format = OutputFormat.JSON;
+        boolean flat = false;
+        boolean incremental = false;
+        List<String> paths = new ArrayList<>();
+        for (String argument : args) {
+            try {
+                if (argument.startsWith("--timeout=")) {
+                    options = options.withStatementTimeout(Long.parseLong(argument.substring("--timeout=".length())));
+                } else if (argument.equals("--keep-going")) {
+                    options = options.withKeepGoing(true);
+                } else if (argument.startsWith("--bundle=")) {
+                    bundlePath = argument.substring("--bundle=".length());
+                } else if (argument.equals("--shared-schemas")) {
+                    sharedSchemas = true;
+                } else if (argument.startsWith("--format=")) {
+                    format = OutputFormat.of(argument.substring("--format=".length()));
+                } else if (argument.startsWith("--sections=")) {
+                    Set<TranslationOptions.Section> sections = EnumSet.noneOf(TranslationOptions.Section.class);
+                    for (String section : argument.substring("--sections=".length()).split(",")) {
+                        sections.add(TranslationOptions.Section.of(section));
+                    }
+                    options = options.withSections(sections);
+                } else if (argument.equals("--normalize")) {
+                    options = options.withNormalizations(EnumSet.allOf(Normalization.class));
+                } else if (argument.startsWith("--normalize=")) {
+                    Set<Normalization> normalizations = EnumSet.noneOf(Normalization.class);
+                    for (String normalization : argument.substring("--normalize=".length()).split(",")) {
+                        normalizations.add(Normalization.of(normalization));
+                    }
+                    options = options.withNormalizations(normalizations);
+                } else if (argument.equals("--columnar-values")) {
+                    options = options.withColumnarValues(true);
+                } else if (argument.equals("--flat")) {
+                    flat = true;
+                } else if (argument.equals("--incremental")) {
+                    incremental = true;
+                } else if (argument.startsWith("--")) {
+                    System.err.println("Unknown option:\n\t" + argument + "\n");
+                    return;
+                } else {
+                    paths.add(argument);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid option:\n\t" + argument + "\n");
+                return;
+            }
+        }
+        if (bundlePath == null) {
+            if (sharedSchemas) {
+                System.err.println("Option --shared-schemas requires --bundle.\n");
+                return;
+            }
+            for (String filename : paths) {
+                parseFile(filename, options, new Output(format, null, flat, incremental));
+            }
+            return;
+        }
+        try (Bundle bundle = new Bundle(new File(bundlePath), sharedSchemas, format)) {
+            for (String filename : paths) {
+                parseFile(filename, options, new Output(format, bundle, flat, incremental));
+            }
+        } catch (IOException e) {
+            System.err.println("In bundle:\n\t" + bundlePath);
+            System.err.println(e.toString().trim() + "\n");
         }
     }
 
@@ -28,54 +95,89 @@ public class Main {
      */
 
     public static void parseFile(String path) {
+        parseFile(path, TranslationOptions.DEFAULT);
+    }
+
+    /**
+     * Parse a file or a directory of files with the given options.
+     *
+     * @param path    The input path.
+     * @param options The given options.
+     */
+    public static void parseFile(String path, TranslationOptions options) {
+        parseFile(path, options, new Output(OutputFormat.JSON, null, false, false));
+    }
+
+    /**
+     * Parse a file or a directory of files with the given options, writing every translation to the given output.
+     *
+     * @param path    The input path.
+     * @param options The given options.
+     * @param output  The given output.
+     */
+    private static void parseFile(String path, TranslationOptions options, Output output) {
         String type = FilenameUtils.getExtension(path);
         if (type.equals("sql")) {
-            parseSQLFile(path);
+            parseSQLFile(path, options, output);
         } else if (type.equals("cos")) {
-            parseCOSFile(path);
+            parseCOSFile(path, options, output);
         } else {
             File object = new File(path);
             if (object.isDirectory()) {
                 for (File file : Objects.requireNonNull(object.listFiles())) {
-                    parseFile(file.getPath());
+                    parseFile(file.getPath(), options, output);
                 }
             }
         }
     }
 
     /**
-     * Parse a .sql file.
+     * Parse a .sql file. Statements exceeding the time budget are abandoned and reported in the errors section, while
+     * the other statements carry on. Other failing statements abort the file, unless the options ask to keep going, in
+     * which case they are reported in the errors section as well. With an incremental output, the translations of the
+     * queries are cached next to the file, and only the queries that changed or that depend on changed definitions are
+     * translated again.
      *
      * @param filename The input filename.
+     * @param options  The given options.
+     * @param output   The given output.
      */
 
-    private static void parseSQLFile(String filename) {
+    private static void parseSQLFile(String filename, TranslationOptions options, Output output) {
         try {
-            Pattern comment = Pattern.compile("--.*(\\n|$)");
-            Scanner scanner = new Scanner(new File(filename));
+            SQLScript script = SQLScript.read(new File(filename));
             SchemaGenerator generator = new SchemaGenerator();
-            SQLJSONParser parser = new SQLJSONParser();
-            scanner.useDelimiter(Pattern.compile(";"));
-            while (scanner.hasNext()) {
-                String statement = comment.matcher(scanner.next()).replaceAll("\n").trim();
-                if (!statement.isBlank()) {
-                    try {
-                        if (statement.toUpperCase().startsWith("CREATE TABLE")) {
-                            generator.applyCreateTable(statement);
-                        } else if (statement.toUpperCase().startsWith("DECLARE")) {
-                            generator.applyDeclareFunction(statement);
-                        } else {
-                            parser.parseDML(generator.extractSchema(), statement);
-                        }
-                    } catch (Exception e) {
-                        throw new Exception("In statement:\n" + statement.replaceAll("(?m)^", "\t") + "\n" + e.getMessage());
+            String basePath = FilenameUtils.getFullPath(filename) + FilenameUtils.getBaseName(filename);
+            File cacheFile = new File(basePath + ".cache");
+            SQLJSONParser parser = output.incremental
+                    ? new SQLJSONParser(options, TranslationCache.read(cacheFile, options))
+                    : new SQLJSONParser(options);
+            for (SQLScript.Statement statement : script) {
+                try {
+                    parser.parseStatement(generator, statement);
+                } catch (Deadline.StatementTimeoutException e) {
+                    parser.recordError(new StatementError(statement, e.getMessage(), StatementError.Kind.TIMEOUT));
+                } catch (Exception | AssertionError e) {
+                    StatementError error = new StatementError(statement, String.valueOf(e.getMessage()));
+                    if (!options.isKeepGoing()) {
+                        throw new Exception(error.toString());
                     }
+                    parser.recordError(error);
                 }
             }
-            String outputPath = FilenameUtils.getFullPath(filename) + FilenameUtils.getBaseName(filename) + ".json";
-            File outputFile = new File(outputPath);
-            parser.dumpToJSON(outputFile);
-            scanner.close();
+            ObjectNode json = parser.toJSON(output.format.getMapper());
+            if (output.incremental) {
+                parser.getCache().write(cacheFile);
+            }
+            if (output.flat) {
+                FlatPlan.of(json).write(new File(basePath + ".flat"));
+            }
+            if (output.bundle != null) {
+                output.bundle.add(filename, json);
+                return;
+            }
+            File outputFile = new File(basePath + "." + output.format.getExtension());
+            output.format.getWriter().writeValue(outputFile, json);
         } catch (Exception e) {
             System.err.println("In file:\n\t" + filename);
             System.err.println(e.toString().trim() + "\n");
@@ -91,8 +193,10 @@ public class Main {
      * Then the .sql file will be passed to parseSQLFile(...) and will not be deleted after it is used.
      *
      * @param filename The input .cos filename
+     * @param options  The given options.
+     * @param output   The given output.
      */
-    private static void parseCOSFile(String filename) {
+    private static void parseCOSFile(String filename, TranslationOptions options, Output output) {
         try {
             Scanner scanner = new Scanner(new File(filename));
             Pattern schemaPattern = Pattern.compile("(?<=schema\\s)(\\w+)\\((.*)\\)$");
@@ -138,11 +242,36 @@ public class Main {
             BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(sql));
             bufferedWriter.write(sqlBuilder.toString());
             bufferedWriter.close();
-            parseSQLFile(intermediate);
+            parseSQLFile(intermediate, options, output);
         } catch (Exception e) {
             System.err.println("In file:\n\t" + filename);
             System.err.println(e.toString().trim() + "\n");
         }
     }
 
+    /**
+     * Where and how the translations are written.
+     */
+    private static final class Output {
+
+        final OutputFormat format;
+        final Bundle bundle;
+        final boolean flat;
+        final boolean incremental;
+
+        /**
+         * @param encoding  The format of the translations.
+         * @param target    The bundle receiving the translations, or null to write a file next to every input.
+         * @param flatPlans Whether to also write a flat plan next to every input.
+         * @param cached    Whether to reuse and update a cache of translations next to every input.
+         */
+        Output(OutputFormat encoding, Bundle target, boolean flatPlans, boolean cached) {
+            format = encoding;
+            bundle = target;
+            flat = flatPlans;
+            incremental = cached;
+        }
+
+    }
+
 }
@@ -0,0 +1,111 @@
+package org.cosette;
+
+import org.apache.calcite.plan.Contexts;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.rules.FilterMergeRule;
+import org.apache.calcite.rel.rules.ProjectMergeRule;
+import org.apache.calcite.rel.rules.ProjectRemoveRule;
+import org.apache.calcite.rel.rules.UnionMergeRule;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+
+import java.util.Locale;
+
+/**
+ * The semantics-preserving rewrites that can be applied to a plan before it is translated. Like the RawPlanner, they
+ * never simplify expressions, and they leave nodes with correlation variables or sub-queries alone.
+ */
+public enum Normalization {
+
+    /**
+     * Merge a projection into the projection below it.
+     */
+    PROJECT_MERGE(ProjectMergeRule.Config.DEFAULT
+            .withOperandSupplier(b0 -> b0.operand(Project.class).predicate(Normalization::plain)
+                    .oneInput(b1 -> b1.operand(Project.class).predicate(Normalization::plain).anyInputs()))
+            .withRelBuilderFactory(Builders.raw)
+            .as(ProjectMergeRule.Config.class)
+            .toRule()),
+
+    /**
+     * Remove a projection that returns its input unchanged.
+     */
+    PROJECT_REMOVE(ProjectRemoveRule.Config.DEFAULT
+            .withRelBuilderFactory(Builders.raw)
+            .as(ProjectRemoveRule.Config.class)
+            .toRule()),
+
+    /**
+     * Flatten a union whose input is a union of the same kind.
+     */
+    UNION_MERGE(UnionMergeRule.Config.DEFAULT
+            .withRelBuilderFactory(Builders.raw)
+            .as(UnionMergeRule.Config.class)
+            .toRule()),
+
+    /**
+     * Merge a filter into the filter below it.
+     */
+    FILTER_MERGE(FilterMergeRule.Config.DEFAULT
+            .withOperandSupplier(b0 -> b0.operand(Filter.class).predicate(Normalization::plain)
+                    .oneInput(b1 -> b1.operand(Filter.class).predicate(Normalization::plain).anyInputs()))
+            .withRelBuilderFactory(Builders.raw)
+            .as(FilterMergeRule.Config.class)
+            .toRule());
+
+    private final RelOptRule rule;
+
+    Normalization(RelOptRule implementation) {
+        rule = implementation;
+    }
+
+    /**
+     * Find a normalization by its command line name, such as project-merge.
+     *
+     * @param name The given name.
+     * @return The corresponding normalization.
+     */
+    public static Normalization of(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    private static boolean plain(Project project) {
+        return RexUtil.SubQueryFinder.find(project.getProjects()) == null;
+    }
+
+    private static boolean plain(Filter filter) {
+        return filter.getVariablesSet().isEmpty() && RexUtil.SubQueryFinder.find(filter.getCondition()) == null;
+    }
+
+    /**
+     * @return The command line name of the normalization, such as project-merge, which is also its name in the output.
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * @return The rule implementing the normalization.
+     */
+    RelOptRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Holds the builder factory of the rules, which has to be initialized before the constants.
+     */
+    private static final class Builders {
+
+        static final RelBuilderFactory raw = RelBuilder.proto(Contexts.of(RelBuilder.Config.DEFAULT
+                .withSimplify(false)
+                .withSimplifyValues(false)
+                .withBloat(-1)
+                .withDedupAggregateCalls(false)
+                .withPruneInputOfAggregate(false)));
+
+    }
+
+}
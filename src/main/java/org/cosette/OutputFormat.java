@@ -0,0 +1,95 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.util.Locale;
+
+/**
+ * The encodings a translation can be written in. All of them carry the same logical format.
+ */
+public enum OutputFormat {
+
+    /**
+     * Pretty-printed JSON, the default.
+     */
+    JSON(new ObjectMapper(), "json", true),
+
+    /**
+     * JSON without any whitespace.
+     */
+    COMPACT_JSON(new ObjectMapper(), "json", false),
+
+    /**
+     * Binary CBOR.
+     */
+    CBOR(new ObjectMapper(new CBORFactory()), "cbor", false),
+
+    /**
+     * Binary Smile, with repeated names and short string values, such as operator and type names, written only once.
+     */
+    SMILE(new ObjectMapper(new SmileFactory().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)), "sml", false);
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final String extension;
+
+    OutputFormat(ObjectMapper codec, String suffix, boolean pretty) {
+        mapper = codec;
+        writer = pretty ? codec.writerWithDefaultPrettyPrinter() : codec.writer();
+        extension = suffix;
+    }
+
+    /**
+     * Find a format by its command line name: json, compact, cbor or smile.
+     *
+     * @param name The given name.
+     * @return The corresponding format.
+     */
+    public static OutputFormat of(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "json":
+                return JSON;
+            case "compact":
+                return COMPACT_JSON;
+            case "cbor":
+                return CBOR;
+            case "smile":
+                return SMILE;
+            default:
+                throw new IllegalArgumentException("Unknown output format: " + name);
+        }
+    }
+
+    /**
+     * @return A ObjectMapper instance that reads and writes this format.
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * @return A ObjectWriter instance that writes this format.
+     */
+    public ObjectWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return The file extension of this format, without the dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return Whether this format is textual JSON.
+     */
+    public boolean isJSON() {
+        return this == JSON || this == COMPACT_JSON;
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.cosette;
+
+import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A PlanNormalizer instance applies the selected normalizations to plans with a HepPlanner, until none of them
+ * applies, and counts how many times each of them fired.
+ */
+class PlanNormalizer implements RelOptListener {
+
+    private final HepProgram program;
+    private final Map<RelOptRule, Normalization> normalizations = new HashMap<>();
+    private final Map<Normalization, Integer> hits = new EnumMap<>(Normalization.class);
+    private Deadline deadline = Deadline.after(0);
+
+    /**
+     * Create a normalizer with the given normalizations.
+     *
+     * @param selected The given normalizations.
+     */
+    PlanNormalizer(Set<Normalization> selected) {
+        HepProgramBuilder builder = HepProgram.builder();
+        for (Normalization normalization : selected) {
+            builder.addRuleInstance(normalization.getRule());
+            normalizations.put(normalization.getRule(), normalization);
+            hits.put(normalization, 0);
+        }
+        program = builder.build();
+    }
+
+    /**
+     * Normalize a plan.
+     *
+     * @param plan The given plan.
+     * @return The normalized plan.
+     */
+    RelNode normalize(RelNode plan) {
+        return normalize(plan, Deadline.after(0));
+    }
+
+    /**
+     * Normalize a plan, giving up once the deadline expires. The deadline is checked before every rule attempt.
+     *
+     * @param plan  The given plan.
+     * @param limit The given deadline.
+     * @return The normalized plan.
+     */
+    RelNode normalize(RelNode plan, Deadline limit) {
+        deadline = limit;
+        try {
+            HepPlanner planner = new HepPlanner(program);
+            planner.addListener(this);
+            planner.setRoot(plan);
+            return planner.findBestExp();
+        } finally {
+            deadline = Deadline.after(0);
+        }
+    }
+
+    /**
+     * @return The number of times each normalization fired so far.
+     */
+    Map<Normalization, Integer> getHits() {
+        return hits;
+    }
+
+    /**
+     * Count the normalizations that fired on a plan normalized earlier.
+     *
+     * @param fired The number of times each normalization fired on the plan.
+     */
+    void addHits(Map<Normalization, Integer> fired) {
+        fired.forEach((normalization, count) -> hits.merge(normalization, count, Integer::sum));
+    }
+
+    @Override
+    public void ruleProductionSucceeded(RuleProductionEvent event) {
+        Normalization normalization = normalizations.get(event.getRuleCall().getRule());
+        if (normalization != null && !event.isBefore()) {
+            hits.merge(normalization, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public void relEquivalenceFound(RelEquivalenceEvent event) {
+    }
+
+    @Override
+    public void ruleAttempted(RuleAttemptedEvent event) {
+        if (event.isBefore()) {
+            deadline.check();
+        }
+    }
+
+    @Override
+    public void relDiscarded(RelDiscardedEvent event) {
+    }
+
+    @Override
+    public void relChosen(RelChosenEvent event) {
+    }
+
+}
@@ -0,0 +1,216 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.TimeString;
+import org.apache.calcite.util.TimestampString;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A QueryTemplate instance holds the translation of a query with dynamic parameters, in which every parameter is a
+ * typed slot. Binding values to the slots yields the translation of the instantiated query without parsing, validating
+ * or converting it again. Instances are immutable, so they can be shared by many threads. <br>
+ * Format of a slot: {parameter: index, type: type}
+ */
+public final class QueryTemplate {
+
+    private static final RexBuilder literals = new RexBuilder(new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT));
+
+    private final ObjectMapper mapper;
+    private final ObjectNode json;
+    private final List<RelDataType> parameterTypes;
+    private final CosetteSchema schema;
+
+    QueryTemplate(ObjectMapper writer, ObjectNode translated, List<RelDataType> parameters, CosetteSchema source) {
+        mapper = writer;
+        json = translated;
+        parameterTypes = Collections.unmodifiableList(new ArrayList<>(parameters));
+        schema = source;
+    }
+
+    /**
+     * @return The translation with unbound slots.
+     */
+    public ObjectNode getJSON() {
+        return json.deepCopy();
+    }
+
+    /**
+     * @return The number of dynamic parameters.
+     */
+    public int getParameterCount() {
+        return parameterTypes.size();
+    }
+
+    /**
+     * @return The types of the dynamic parameters, in order.
+     */
+    public List<String> getParameterTypes() {
+        List<String> types = new ArrayList<>();
+        for (RelDataType type : parameterTypes) {
+            types.add(type.getSqlTypeName().name());
+        }
+        return types;
+    }
+
+    /**
+     * @return The schema the template was translated with.
+     */
+    CosetteSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Bind values to the dynamic parameters.
+     *
+     * @param values The given values, in parameter order. A null value binds a null literal.
+     * @return The translation of the instantiated query.
+     */
+    public Translation bind(Object... values) {
+        return bind(Arrays.asList(values));
+    }
+
+    /**
+     * Bind values to the dynamic parameters. Every value is converted to a literal of the type of its parameter, so
+     * the slot is replaced by the literal node the query would have had with the value written in place. A value of a
+     * Java type that does not match the type of its parameter is rejected. <br>
+     * Format of a literal: {operator: value, operand: [], type: type}
+     *
+     * @param values The given values, in parameter order. A null value binds a null literal.
+     * @return The translation of the instantiated query.
+     */
+    public Translation bind(List<?> values) {
+        if (values.size() != parameterTypes.size()) {
+            throw new IllegalArgumentException("Expected " + parameterTypes.size() + " parameters but got "
+                    + values.size() + ".");
+        }
+        List<ObjectNode> bound = new ArrayList<>();
+        for (int index = 0; index < values.size(); index += 1) {
+            RelDataType type = parameterTypes.get(index);
+            Object value = values.get(index) == null ? null : literalValue(values.get(index), type.getSqlTypeName());
+            RexNode literal = values.get(index) == null ? literals.makeNullLiteral(type)
+                    : value == null ? null : literals.makeLiteral(value, type, false);
+            if (!(literal instanceof RexLiteral)) {
+                throw new IllegalArgumentException("Cannot bind " + values.get(index) + " to parameter " + index
+                        + " of type " + type.getSqlTypeName() + ".");
+            }
+            ObjectNode node = mapper.createObjectNode();
+            node.put("operator", RexJSONVisitor.literalValue((RexLiteral) literal));
+            node.putArray("operand");
+            node.put("type", type.getSqlTypeName().name());
+            bound.add(node);
+        }
+        ObjectNode instance = json.deepCopy();
+        substitute(instance, bound);
+        return new Translation(mapper, instance, List.of());
+    }
+
+    /**
+     * Convert a value to the representation Calcite expects in a literal of the given type. Numbers bind to numeric
+     * types, with only integral numbers binding to integer types, strings to character types, booleans to BOOLEAN,
+     * byte arrays to binary types, and java.time values to DATE, TIME and TIMESTAMP.
+     *
+     * @param value    The given value.
+     * @param typeName The type of the parameter.
+     * @return The converted value, or null if the value cannot be bound to the type.
+     */
+    private static Object literalValue(Object value, SqlTypeName typeName) {
+        switch (typeName) {
+            case BOOLEAN:
+                return value instanceof Boolean ? value : null;
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return value instanceof Byte || value instanceof Short || value instanceof Integer
+                        || value instanceof Long ? value : null;
+            case DECIMAL:
+            case FLOAT:
+            case REAL:
+            case DOUBLE:
+                return value instanceof Number ? value : null;
+            case CHAR:
+            case VARCHAR:
+                return value instanceof String ? value : null;
+            case BINARY:
+            case VARBINARY:
+                return value instanceof byte[] ? new ByteString((byte[]) value) : null;
+            case DATE:
+                if (value instanceof LocalDate) {
+                    LocalDate date = (LocalDate) value;
+                    return new DateString(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+                }
+                return null;
+            case TIME:
+                if (value instanceof LocalTime) {
+                    LocalTime time = (LocalTime) value;
+                    return new TimeString(time.getHour(), time.getMinute(), time.getSecond()).withNanos(time.getNano());
+                }
+                return null;
+            case TIMESTAMP:
+                if (value instanceof LocalDateTime) {
+                    LocalDateTime timestamp = (LocalDateTime) value;
+                    return new TimestampString(timestamp.getYear(), timestamp.getMonthValue(),
+                            timestamp.getDayOfMonth(), timestamp.getHour(), timestamp.getMinute(),
+                            timestamp.getSecond()).withNanos(timestamp.getNano());
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Replace the slots below a node by the bound literals.
+     *
+     * @param node  The given node.
+     * @param bound The bound literals, in parameter order.
+     */
+    private static void substitute(JsonNode node, List<ObjectNode> bound) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (isSlot(field.getValue())) {
+                    field.setValue(bound.get(field.getValue().get("parameter").intValue()).deepCopy());
+                } else {
+                    substitute(field.getValue(), bound);
+                }
+            }
+        } else if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            for (int index = 0; index < array.size(); index += 1) {
+                if (isSlot(array.get(index))) {
+                    array.set(index, bound.get(array.get(index).get("parameter").intValue()).deepCopy());
+                } else {
+                    substitute(array.get(index), bound);
+                }
+            }
+        }
+    }
+
+    private static boolean isSlot(JsonNode node) {
+        return node.isObject() && node.size() == 2 && node.has("parameter") && node.get("parameter").isInt();
+    }
+
+}
@@ -8,14 +8,17 @@ import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.plan.*;
 import org.apache.calcite.plan.volcano.VolcanoPlanner;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.Prepare;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexExecutor;
+import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlInsert;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlOperatorTable;
@@ -24,14 +27,17 @@ import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.sql.util.SqlOperatorTables;
 import org.apache.calcite.sql.validate.SqlValidator;
 import org.apache.calcite.sql.validate.SqlValidatorImpl;
+import org.apache.calcite.sql.validate.SqlValidatorScope;
 import org.apache.calcite.sql2rel.RelDecorrelator;
 import org.apache.calcite.sql2rel.SqlRexConvertletTable;
 import org.apache.calcite.sql2rel.SqlToRelConverter;
 import org.apache.calcite.tools.*;
 import org.apache.calcite.util.SourceStringReader;
+import org.apache.calcite.util.Util;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Objects.requireNonNull;
@@ -40,6 +46,12 @@ import static java.util.Objects.requireNonNull;
  * A copy of the PlannerImpl that disables all rewrite rules.
  */
 public class RawPlanner implements RelOptTable.ViewExpander {
+    /**
+     * Types are interned by Calcite and type factories keep no other state that the parser uses, so the planners of
+     * all statements share one type factory for the default type system. Tables can then memoize their row types.
+     */
+    private static final JavaTypeFactory sharedTypeFactory = new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    private static volatile boolean warm = false;
     private final SqlOperatorTable operatorTable;
     private final ImmutableList<Program> programs;
     private final @Nullable RelOptCostFactory costFactory;
@@ -55,6 +67,7 @@ public class RawPlanner implements RelOptTable.ViewExpander {
     private final SqlValidator.Config sqlValidatorConfig;
     private final SqlToRelConverter.Config sqlToRelConverterConfig;
     private final SqlRexConvertletTable convertletTable;
+    private final Deadline deadline;
     // set in STATE_2_READY
     private @Nullable
     final SchemaPlus defaultSchema;
@@ -68,8 +81,20 @@ public class RawPlanner implements RelOptTable.ViewExpander {
     // set in STATE_4_VALIDATE
     private @Nullable SqlValidator validator;
     private @Nullable SqlNode validatedSqlNode;
+    private final List<String> expandedViews = new ArrayList<>();
 
     public RawPlanner(SchemaPlus schema) {
+        this(schema, Deadline.after(0));
+    }
+
+    /**
+     * Create a planner whose validation and conversion stop once the given deadline expires.
+     *
+     * @param schema The given schema.
+     * @param limit  The given deadline.
+     */
+    public RawPlanner(SchemaPlus schema, Deadline limit) {
+        this.deadline = limit;
         SqlToRelConverter.Config converterConfig = SqlToRelConverter.config()
                 .withRelBuilderConfigTransform(c -> c.withPushJoinCondition(false)
                         .withSimplify(false)
@@ -99,6 +124,27 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         this.connectionConfig = connConfig(context, parserConfig);
     }
 
+    /**
+     * Run a trivial statement through the parser, the validator and the converter once, so that class loading and code
+     * generation are not charged to the time budget of the first real statement.
+     */
+    public static void warmUp() {
+        if (warm) {
+            return;
+        }
+        synchronized (RawPlanner.class) {
+            if (!warm) {
+                try {
+                    RawPlanner planner = new RawPlanner(Frameworks.createRootSchema(true));
+                    planner.rel(planner.parse("SELECT A FROM (VALUES (1)) AS T (A) WHERE A = 1 GROUP BY A"));
+                } catch (Exception e) {
+                    throw new RuntimeException("Cannot warm up the planner.", e);
+                }
+                warm = true;
+            }
+        }
+    }
+
     private static CalciteConnectionConfig connConfig(Context context,
                                                       SqlParser.Config parserConfig) {
         CalciteConnectionConfigImpl config =
@@ -129,7 +175,7 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         RelDataTypeSystem typeSystem =
                 connectionConfig.typeSystem(RelDataTypeSystem.class,
                         RelDataTypeSystem.DEFAULT);
-        typeFactory = new JavaTypeFactoryImpl(typeSystem);
+        typeFactory = typeSystem == RelDataTypeSystem.DEFAULT ? sharedTypeFactory : new JavaTypeFactoryImpl(typeSystem);
         RelOptPlanner planner = this.planner = new VolcanoPlanner(costFactory, context);
         RelOptUtil.registerDefaultRules(planner,
                 connectionConfig.materializationsEnabled(),
@@ -155,9 +201,12 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         Reader reader = new SourceStringReader(sql);
         SqlParser parser = SqlParser.create(reader, parserConfig);
         SqlNode sqlNode = parser.parseStmt();
+        deadline.check();
         this.validator = createSqlValidator(createCatalogReader());
         try {
             validatedSqlNode = validator.validate(sqlNode);
+        } catch (Deadline.StatementTimeoutException e) {
+            throw e;
         } catch (RuntimeException e) {
             throw new ValidationException(e);
         }
@@ -170,6 +219,7 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         return new RawSqlValidator(opTab,
                 catalogReader,
                 getTypeFactory(),
+                deadline,
                 sqlValidatorConfig
                         .withDefaultNullCollation(connectionConfig.defaultNullCollation())
                         .withLenientOperatorLookup(connectionConfig.lenientOperatorLookup())
@@ -187,6 +237,13 @@ public class RawPlanner implements RelOptTable.ViewExpander {
                 getTypeFactory(), connectionConfig);
     }
 
+    /**
+     * @return The validator that validated the parsed statement.
+     */
+    SqlValidator getValidator() {
+        return requireNonNull(validator, "validator");
+    }
+
     public JavaTypeFactory getTypeFactory() {
         return requireNonNull(typeFactory, "typeFactory");
     }
@@ -201,11 +258,19 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         final SqlToRelConverter.Config config =
                 sqlToRelConverterConfig.withTrimUnusedFields(false);
         final SqlToRelConverter sqlToRelConverter =
-                new SqlToRelConverter(this, validator,
-                        createCatalogReader(), cluster, convertletTable, config);
+                new RawSqlToRelConverter(this, validator,
+                        createCatalogReader(), cluster, convertletTable, config, deadline);
         return sqlToRelConverter.convertQuery(validatedSqlNode, false, true);
     }
 
+    /**
+     * @return The row type of the dynamic parameters of the validated statement, with one field per parameter in order.
+     */
+    public RelDataType getParameterRowType() {
+        return requireNonNull(validator, "validator").getParameterRowType(requireNonNull(validatedSqlNode,
+                "validatedSqlNode is null. Need to call #validate() first"));
+    }
+
     private RexBuilder createRexBuilder() {
         return new RexBuilder(getTypeFactory());
     }
@@ -217,6 +282,14 @@ public class RawPlanner implements RelOptTable.ViewExpander {
             ready();
             planner = requireNonNull(this.planner, "planner");
         }
+        CosetteView view = findView(viewPath);
+        if (view != null) {
+            expandedViews.add(view.id.toString());
+            final RelOptCluster cluster = RelOptCluster.create(planner, createRexBuilder());
+            final SqlToRelConverter.Config config = sqlToRelConverterConfig.withTrimUnusedFields(false);
+            return view.convert(viewValidator -> new RawSqlToRelConverter(this, viewValidator,
+                    createCatalogReader(), cluster, convertletTable, config, deadline));
+        }
         SqlParser parser = SqlParser.create(queryString, parserConfig);
         SqlNode sqlNode;
         try {
@@ -234,8 +307,8 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         final SqlToRelConverter.Config config =
                 sqlToRelConverterConfig.withTrimUnusedFields(false);
         final SqlToRelConverter sqlToRelConverter =
-                new SqlToRelConverter(this, validator,
-                        catalogReader, cluster, convertletTable, config);
+                new RawSqlToRelConverter(this, validator,
+                        catalogReader, cluster, convertletTable, config, deadline);
 
         final RelRoot root =
                 sqlToRelConverter.convertQuery(sqlNode, true, false);
@@ -246,14 +319,70 @@ public class RawPlanner implements RelOptTable.ViewExpander {
         return root2.withRel(
                 RelDecorrelator.decorrelateQuery(root.rel, relBuilder));
     }
+
+    /**
+     * @return The schema the statements are resolved in.
+     */
+    @Nullable SchemaPlus getDefaultSchema() {
+        return defaultSchema;
+    }
+
+    /**
+     * @return The names of the views expanded while converting the statement, in the order they were expanded.
+     */
+    List<String> getExpandedViews() {
+        return expandedViews;
+    }
+
+    /**
+     * Look up a table of the schema without parsing any statement, as a query scanning it would see it.
+     *
+     * @param qualifiedName The qualified name of the table.
+     * @return The table, or null if there is no such table.
+     */
+    @Nullable RelOptTable resolveTable(List<String> qualifiedName) {
+        if (planner == null) {
+            ready();
+        }
+        return createCatalogReader().getTable(qualifiedName);
+    }
+
+    /**
+     * Find the view a view path refers to, whose validated body can be converted without parsing it again.
+     *
+     * @param viewPath The given view path.
+     * @return The view, or null if the path does not refer to a CosetteView instance.
+     */
+    private @Nullable CosetteView findView(@Nullable List<String> viewPath) {
+        if (viewPath == null || viewPath.isEmpty()) {
+            return null;
+        }
+        Table table = rootSchema(requireNonNull(defaultSchema, "defaultSchema")).getTable(Util.last(viewPath));
+        return table instanceof CosetteView ? (CosetteView) table : null;
+    }
 }
 
 class RawSqlValidator extends SqlValidatorImpl {
 
+    private final Deadline deadline;
+
     RawSqlValidator(SqlOperatorTable opTab,
                     CalciteCatalogReader catalogReader, JavaTypeFactory typeFactory,
-                    Config config) {
+                    Deadline limit, Config config) {
         super(opTab, catalogReader, typeFactory, config);
+        deadline = limit;
+    }
+
+    @Override
+    public void validateQuery(SqlNode node, @Nullable SqlValidatorScope scope, RelDataType targetRowType) {
+        deadline.check();
+        super.validateQuery(node, scope, targetRowType);
+    }
+
+    @Override
+    public RelDataType deriveType(SqlValidatorScope scope, SqlNode expr) {
+        deadline.check();
+        return super.deriveType(scope, expr);
     }
 
     @Override
@@ -271,4 +400,46 @@ class RawSqlValidator extends SqlValidatorImpl {
                 super.getLogicalTargetRowType(targetRowType, insert);
         return ((JavaTypeFactory) typeFactory).toSql(superType);
     }
-}
\ No newline at end of file
+}
+
+class RawSqlToRelConverter extends SqlToRelConverter {
+
+    private final Deadline deadline;
+
+    RawSqlToRelConverter(RelOptTable.ViewExpander viewExpander, @Nullable SqlValidator validator,
+                         Prepare.CatalogReader catalogReader, RelOptCluster cluster,
+                         SqlRexConvertletTable convertletTable, Config config, Deadline limit) {
+        super(viewExpander, validator, catalogReader, cluster, convertletTable, config);
+        deadline = limit;
+    }
+
+    /**
+     * Calcite wraps the exceptions thrown while converting some expressions, so a timeout is unwrapped again to still
+     * be reported as one.
+     */
+    @Override
+    public RelRoot convertQuery(SqlNode query, boolean needsValidation, boolean top) {
+        try {
+            return super.convertQuery(query, needsValidation, top);
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof Deadline.StatementTimeoutException) {
+                    throw (Deadline.StatementTimeoutException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected RelRoot convertQueryRecursive(SqlNode query, boolean top, @Nullable RelDataType targetRowType) {
+        deadline.check();
+        return super.convertQueryRecursive(query, top, targetRowType);
+    }
+
+    @Override
+    protected RexNode convertExtendedExpression(SqlNode node, Blackboard bb) {
+        deadline.check();
+        return super.convertExtendedExpression(node, bb);
+    }
+}
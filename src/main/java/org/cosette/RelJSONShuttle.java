@@ -1,5 +1,6 @@
 package org.cosette;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -17,13 +18,18 @@ import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.schema.ColumnStrategy;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.validate.SqlUserDefinedAggFunction;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.mapping.IntPair;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,40 +57,184 @@ public class RelJSONShuttle implements RelShuttle {
      * @param file     The given file.
      */
     public static void dumpToJSON(List<RelNode> relNodes, File file) throws IOException {
-
         ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, toJSON(relNodes, mapper));
+    }
 
-        ObjectNode mainObject = mapper.createObjectNode();
+    /**
+     * Translate a list of RelNode to a ObjectNode instance with the schemas, queries and help sections.
+     *
+     * @param relNodes The given list of RelNode.
+     * @param mapper   A ObjectMapper instance that could be used to generate JSON.
+     * @return The translated ObjectNode instance.
+     */
+    public static ObjectNode toJSON(List<RelNode> relNodes, ObjectMapper mapper) {
+        return toJSON(relNodes, mapper, TranslationOptions.DEFAULT.getSections());
+    }
 
-        ArrayNode schemaArray = mainObject.putArray("schemas");
+    /**
+     * Translate a list of RelNode to a ObjectNode instance with the given sections.
+     *
+     * @param relNodes The given list of RelNode.
+     * @param mapper   A ObjectMapper instance that could be used to generate JSON.
+     * @param sections The sections to be included.
+     * @return The translated ObjectNode instance.
+     */
+    public static ObjectNode toJSON(List<RelNode> relNodes, ObjectMapper mapper, Set<TranslationOptions.Section> sections) {
+        List<RelOptTable> tableList = new ArrayList<>();
+        List<JsonNode> queries = new ArrayList<>();
+        if (needsQueries(sections)) {
+            for (RelNode relNode : relNodes) {
+                queries.add(translate(relNode, mapper, tableList));
+            }
+        }
+        ObjectNode mainObject = assemble(queries, tableList, mapper, sections);
+        if (sections.contains(TranslationOptions.Section.HELP)) {
+            ArrayNode helpArray = mainObject.putArray("help");
+            for (RelNode relNode : relNodes) {
+                helpArray.add(relNode.explain());
+            }
+        }
+        return mainObject;
+    }
 
-        ArrayNode queryArray = mainObject.putArray("queries");
+    /**
+     * @param sections The given sections.
+     * @return Whether the queries have to be translated for the given sections.
+     */
+    static boolean needsQueries(Set<TranslationOptions.Section> sections) {
+        return sections.contains(TranslationOptions.Section.SCHEMAS) || sections.contains(TranslationOptions.Section.QUERIES)
+                || sections.contains(TranslationOptions.Section.FINGERPRINTS) || sections.contains(TranslationOptions.Section.EQUIVALENT);
+    }
 
-        ArrayNode helpArray = mainObject.putArray("help");
+    /**
+     * Translate a single query. The tables it scans are looked up in the given list, and appended to it if they are not
+     * there yet. If the translation fails, the list is left as it was.
+     *
+     * @param relNode   The given query.
+     * @param mapper    A ObjectMapper instance that could be used to generate JSON.
+     * @param tableList The tables seen so far.
+     * @return The translated ObjectNode instance.
+     */
+    public static ObjectNode translate(RelNode relNode, ObjectMapper mapper, List<RelOptTable> tableList) {
+        return translate(relNode, mapper, tableList, false);
+    }
 
-        List<RelOptTable> tableList = new ArrayList<>();
+    /**
+     * Translate a single query, choosing how values are output. The tables it scans are looked up in the given list,
+     * and appended to it if they are not there yet. If the translation fails, the list is left as it was.
+     *
+     * @param relNode   The given query.
+     * @param mapper    A ObjectMapper instance that could be used to generate JSON.
+     * @param tableList The tables seen so far.
+     * @param columnar  Whether the tuples of a LogicalValues node are output column by column.
+     * @return The translated ObjectNode instance.
+     */
+    public static ObjectNode translate(RelNode relNode, ObjectMapper mapper, List<RelOptTable> tableList, boolean columnar) {
+        return translate(relNode, new Environment(mapper, tableList, columnar));
+    }
 
-        for (RelNode relNode : relNodes) {
-            Environment environment = new Environment(mapper, tableList);
+    /**
+     * Translate a single query in the given environment, which records the tables and the declared functions the query
+     * depends on. The check constraints of the tables it scans for the first time are derived as well. If the
+     * translation fails, the table list of the environment is left as it was.
+     *
+     * @param relNode     The given query.
+     * @param environment The given environment.
+     * @return The translated ObjectNode instance.
+     */
+    public static ObjectNode translate(RelNode relNode, Environment environment) {
+        List<RelOptTable> tableList = environment.getRelOptTables();
+        int known = tableList.size();
+        try {
             RelJSONShuttle relJsonShuttle = new RelJSONShuttle(environment);
+            relNode.accept(relJsonShuttle);
+            CosetteTable.deriveCheckConstraints(tableList.subList(known, tableList.size()));
+            return relJsonShuttle.getRelNode();
+        } catch (RuntimeException e) {
+            tableList.subList(known, tableList.size()).clear();
+            throw e;
+        } catch (Exception e) {
+            tableList.subList(known, tableList.size()).clear();
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
 
-            helpArray.add(relNode.explain());
+    /**
+     * Replace the table indices of the scans in a translated query. <br>
+     * Format: {scan: table}
+     *
+     * @param query   The given translated query, which is modified in place.
+     * @param mapping The new index of every table index.
+     */
+    static void renumberScans(JsonNode query, int[] mapping) {
+        if (query.isObject()) {
+            ObjectNode object = (ObjectNode) query;
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getKey().equals("scan") && field.getValue().isInt()) {
+                    field.setValue(object.numberNode(mapping[field.getValue().intValue()]));
+                } else {
+                    renumberScans(field.getValue(), mapping);
+                }
+            }
+        } else if (query.isArray()) {
+            for (JsonNode element : query) {
+                renumberScans(element, mapping);
+            }
+        }
+    }
 
-            relNode.accept(relJsonShuttle);
-            queryArray.add(relJsonShuttle.getRelNode());
+    /**
+     * Assemble translated queries and the tables they scan to a ObjectNode instance with the given sections, except
+     * for the help section. The fingerprints section holds the fingerprints of the tables and of the queries, in the
+     * same order as in the schemas and queries sections. The equivalent section lists the classes of queries whose
+     * translations are identical, so that every pair of queries in a class is trivially equivalent. <br>
+     * Format: {fingerprints: {schemas: [hex], queries: [hex]}, equivalent: [[query]]}
+     *
+     * @param queries   The translated queries.
+     * @param tableList The tables scanned by the queries, in the order they are referred to.
+     * @param mapper    A ObjectMapper instance that could be used to generate JSON.
+     * @param sections  The sections to be included.
+     * @return The assembled ObjectNode instance.
+     */
+    public static ObjectNode assemble(List<? extends JsonNode> queries, List<RelOptTable> tableList, ObjectMapper mapper,
+                                      Set<TranslationOptions.Section> sections) {
+
+        ObjectNode mainObject = mapper.createObjectNode();
 
-            tableList = environment.getRelOptTables();
+        boolean withFingerprints = sections.contains(TranslationOptions.Section.FINGERPRINTS)
+                || sections.contains(TranslationOptions.Section.EQUIVALENT);
+
+        boolean withSchemas = sections.contains(TranslationOptions.Section.SCHEMAS) || withFingerprints;
+
+        ArrayNode schemaArray = sections.contains(TranslationOptions.Section.SCHEMAS) ? mainObject.putArray("schemas") : mapper.createArrayNode();
+
+        if (sections.contains(TranslationOptions.Section.QUERIES)) {
+            mainObject.putArray("queries").addAll(queries);
         }
 
+        ObjectNode fingerprintObject = sections.contains(TranslationOptions.Section.FINGERPRINTS) ? mainObject.putObject("fingerprints") : mapper.createObjectNode();
+
+        ArrayNode equivalentArray = sections.contains(TranslationOptions.Section.EQUIVALENT) ? mainObject.putArray("equivalent") : mapper.createArrayNode();
+
+        if (!withSchemas) {
+            return mainObject;
+        }
+
+        tableList = new ArrayList<>(tableList);
         List<List<String>> tableNames = new ArrayList<>();
         int index = 0;
         while (index < tableList.size()) {
             RelOptTable table = tableList.get(index);
             tableNames.add(table.getQualifiedName());
+            CosetteTable raw = table.unwrap(CosetteTable.class);
 
             ObjectNode tableObject = mapper.createObjectNode();
 
-            tableObject.put("name", table.getQualifiedName().get(table.getQualifiedName().size() - 1));
+            List<String> qualifiedName = raw != null ? raw.id.names : table.getQualifiedName();
+            tableObject.put("name", qualifiedName.get(qualifiedName.size() - 1));
             ArrayNode fieldArray = tableObject.putArray("fields");
             for (String field : table.getRowType().getFieldNames()) {
                 fieldArray.add(field);
@@ -130,13 +280,18 @@ public class RelJSONShuttle implements RelShuttle {
                 }
             }
 
-            CosetteTable raw = table.unwrap(CosetteTable.class);
             if (raw != null) {
                 ArrayNode checkArray = tableObject.putArray("guaranteed");
-                for (RexNode check : raw.deriveCheckConstraint()) {
-                    Environment checkEnvironment = new Environment(mapper, tableList);
+                List<RexNode> checks = raw.getCheckConstraints();
+                List<ObjectNode> translatedChecks = raw.getTranslatedCheckConstraints();
+                for (int check = 0; check < checks.size(); check += 1) {
+                    if (translatedChecks.get(check) != null) {
+                        checkArray.add(translatedChecks.get(check));
+                        continue;
+                    }
+                    Environment checkEnvironment = new Environment(mapper, tableList, false);
                     RexJSONVisitor checkVisitor = new RexJSONVisitor(checkEnvironment, table.getRowType().getFieldCount());
-                    checkArray.add(check.accept(checkVisitor));
+                    checkArray.add(checks.get(check).accept(checkVisitor));
                     tableList = checkEnvironment.getRelOptTables();
                 }
             }
@@ -147,7 +302,42 @@ public class RelJSONShuttle implements RelShuttle {
 
         }
 
-        mapper.writerWithDefaultPrettyPrinter().writeValue(file, mainObject);
+        if (withFingerprints) {
+            long[] tableFingerprints = new long[schemaArray.size()];
+            ArrayNode schemaFingerprints = fingerprintObject.putArray("schemas");
+            for (int table = 0; table < tableFingerprints.length; table += 1) {
+                tableFingerprints[table] = Fingerprint.of(schemaArray.get(table));
+                schemaFingerprints.add(Fingerprint.toHex(tableFingerprints[table]));
+            }
+            ArrayNode queryFingerprints = fingerprintObject.putArray("queries");
+            Map<Long, List<List<Integer>>> buckets = new LinkedHashMap<>();
+            for (int query = 0; query < queries.size(); query += 1) {
+                long fingerprint = Fingerprint.of(queries.get(query), tableFingerprints);
+                queryFingerprints.add(Fingerprint.toHex(fingerprint));
+                List<List<Integer>> classes = buckets.computeIfAbsent(fingerprint, key -> new ArrayList<>());
+                boolean found = false;
+                for (List<Integer> equivalent : classes) {
+                    if (queries.get(equivalent.get(0)).equals(queries.get(query))) {
+                        equivalent.add(query);
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    classes.add(new ArrayList<>(List.of(query)));
+                }
+            }
+            for (List<List<Integer>> classes : buckets.values()) {
+                for (List<Integer> equivalent : classes) {
+                    if (equivalent.size() > 1) {
+                        ArrayNode members = equivalentArray.addArray();
+                        equivalent.forEach(members::add);
+                    }
+                }
+            }
+        }
+
+        return mainObject;
 
     }
 
@@ -255,6 +445,9 @@ public class RelJSONShuttle implements RelShuttle {
         ObjectNode aggregationArguments = environment.createNode();
         ArrayNode aggregationFunctions = aggregationArguments.putArray("function");
         for (AggregateCall call : aggregate.getAggCallList()) {
+            if (call.getAggregation() instanceof SqlUserDefinedAggFunction) {
+                environment.identifyFunction(call.getAggregation().getName());
+            }
             ObjectNode function = environment.createNode();
             function.put("operator", call.getAggregation().toString());
             ArrayNode operands = function.putArray("operand");
@@ -311,8 +504,11 @@ public class RelJSONShuttle implements RelShuttle {
     }
 
     /**
-     * Visit a LogicalValues node. <br>
-     * Format: {value: {schema: [types], content: [[element]]}}
+     * Visit a LogicalValues node. If the environment asks for columnar values and every non-null literal has the type
+     * of its column, the values are packed in one array per column, holding the operator of every literal in row order,
+     * or null for a null literal. <br>
+     * Format: {value: {schema: [types], content: [[element]]}} <br>
+     * Columnar format: {value: {schema: [types], rows: count, columns: [[operator]]}}
      *
      * @param values The given RelNode instance.
      * @return Null, a placeholder required by interface.
@@ -321,10 +517,28 @@ public class RelJSONShuttle implements RelShuttle {
     public RelNode visit(LogicalValues values) {
         ObjectNode value = environment.createNode();
         ArrayNode schema = value.putArray("schema");
-        ArrayNode content = value.putArray("content");
+        List<SqlTypeName> types = new ArrayList<>();
         for (RelDataTypeField relDataTypeField : values.getRowType().getFieldList()) {
+            types.add(relDataTypeField.getType().getSqlTypeName());
             schema.add(relDataTypeField.getType().getSqlTypeName().name());
         }
+        if (environment.isColumnarValues() && uniform(values, types)) {
+            value.put("rows", values.getTuples().size());
+            ArrayNode columns = value.putArray("columns");
+            for (int column = 0; column < types.size(); column += 1) {
+                ArrayNode cells = columns.addArray();
+                for (List<RexLiteral> tuple : values.getTuples()) {
+                    if (tuple.get(column).isNull()) {
+                        cells.addNull();
+                    } else {
+                        cells.add(RexJSONVisitor.literalValue(tuple.get(column)));
+                    }
+                }
+            }
+            relNode.set("values", value);
+            return null;
+        }
+        ArrayNode content = value.putArray("content");
         for (List<RexLiteral> tuple : values.getTuples()) {
             ArrayNode record = content.addArray();
             for (RexLiteral rexLiteral : tuple) {
@@ -335,6 +549,24 @@ public class RelJSONShuttle implements RelShuttle {
         return null;
     }
 
+    /**
+     * @param values The given LogicalValues node.
+     * @param types  The types of its columns.
+     * @return Whether every non-null literal has the type of its column, so that the type can be recorded once per
+     * column.
+     */
+    private static boolean uniform(LogicalValues values, List<SqlTypeName> types) {
+        for (List<RexLiteral> tuple : values.getTuples()) {
+            for (int column = 0; column < types.size(); column += 1) {
+                RexLiteral literal = tuple.get(column);
+                if (!literal.isNull() && literal.getType().getSqlTypeName() != types.get(column)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Visit a LogicalFilter node. <br>
      * Format: {filter: {condition: {condition}, source: {input}}}
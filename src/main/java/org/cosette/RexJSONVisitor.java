@@ -3,6 +3,7 @@ package org.cosette;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.calcite.rex.*;
+import org.apache.calcite.sql.validate.SqlUserDefinedFunction;
 
 /**
  * AN implementation of RexVisitor interface that could convert a RelNode instance to a ObjectNode instance.
@@ -91,16 +92,23 @@ public class RexJSONVisitor implements RexVisitor<ObjectNode> {
      */
     @Override
     public ObjectNode visitLiteral(RexLiteral literal) {
-        String value = "NULL";
-        if (literal.getValue() != null) {
-            value = literal.getValue().toString();
-        }
-        rexNode.put("operator", value);
+        rexNode.put("operator", literalValue(literal));
         rexNode.putArray("operand");
         rexNode.put("type", literal.getType().getSqlTypeName().name());
         return rexNode;
     }
 
+    /**
+     * @param literal The given RexLiteral instance.
+     * @return The value of the literal as it appears in the operator field, which is NULL for a null literal.
+     */
+    static String literalValue(RexLiteral literal) {
+        if (literal.getValue() == null) {
+            return "NULL";
+        }
+        return literal.getValue().toString();
+    }
+
     /**
      * Visit a RexCall node. <br>
      * Format: {operator: operator, operand: [operands], type: type}
@@ -110,6 +118,9 @@ public class RexJSONVisitor implements RexVisitor<ObjectNode> {
      */
     @Override
     public ObjectNode visitCall(RexCall call) {
+        if (call.getOperator() instanceof SqlUserDefinedFunction) {
+            environment.identifyFunction(call.getOperator().getName());
+        }
         rexNode.put("operator", call.getOperator().toString());
         ArrayNode arguments = rexNode.putArray("operand");
         for (RexNode operand : call.getOperands()) {
@@ -129,9 +140,18 @@ public class RexJSONVisitor implements RexVisitor<ObjectNode> {
         return notImplemented(variable);
     }
 
+    /**
+     * Visit a RexDynamicParam node. <br>
+     * Format: {parameter: index, type: type}
+     *
+     * @param dynamicParam The given RexNode instance.
+     * @return The ObjectNode corresponding to the given RexNode instance.
+     */
     @Override
     public ObjectNode visitDynamicParam(RexDynamicParam dynamicParam) {
-        return notImplemented(dynamicParam);
+        rexNode.put("parameter", dynamicParam.getIndex());
+        rexNode.put("type", dynamicParam.getType().getSqlTypeName().name());
+        return rexNode;
     }
 
     @Override
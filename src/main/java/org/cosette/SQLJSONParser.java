@@ -1,27 +1,88 @@
 package org.cosette;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.rel.RelNode;
-import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.util.Util;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A SQLParse instance can parse DDL statements and valid DML statements into JSON format.
+ * A SQLParse instance can parse DDL statements and valid DML statements into JSON format. Every query is translated as
+ * soon as it is converted, and only its compact FlatPlan encoding is kept, so the Calcite planner, cluster and metadata
+ * of a statement can be released before the next statement is parsed.
  */
 public class SQLJSONParser {
 
-    private final List<RelRoot> rootList;
+    private static final ObjectMapper translator = new ObjectMapper();
+    private static final ThreadPoolExecutor explainer = createExplainer();
+
+    private final List<FlatPlan> queryList;
+    private final List<RelOptTable> tableList;
+    private final List<Future<String>> helpList;
+    private final List<StatementError> errorList;
+    private final TranslationOptions options;
+    private final PlanNormalizer normalizer;
+    private final TranslationCache previousCache;
+    private final TranslationCache cache;
+    private RawPlanner resolver;
+    private String schemaVersion = "";
 
     /**
-     * Create a new instance by setting up the SchemaGenerator instance and the list of RelRoot within.
+     * Create a new instance by setting up the SchemaGenerator instance and the list of translated queries within.
      */
     public SQLJSONParser() {
-        rootList = new ArrayList<>();
+        this(TranslationOptions.DEFAULT);
+    }
+
+    /**
+     * Create a new instance with the given options.
+     *
+     * @param settings The given options.
+     */
+    public SQLJSONParser(TranslationOptions settings) {
+        this(settings, null);
+    }
+
+    /**
+     * Create a new instance with the given options, which reuses the translations of the given cache wherever the
+     * definitions they depend on are unchanged. The translations of the parsed queries are kept in a new cache.
+     *
+     * @param settings The given options.
+     * @param previous The cache of a previous run, or null to translate every query without keeping a cache.
+     */
+    public SQLJSONParser(TranslationOptions settings, TranslationCache previous) {
+        queryList = new ArrayList<>();
+        tableList = new ArrayList<>();
+        helpList = new ArrayList<>();
+        errorList = new ArrayList<>();
+        options = settings;
+        normalizer = options.getNormalizations().isEmpty() ? null : new PlanNormalizer(options.getNormalizations());
+        previousCache = previous;
+        cache = previous == null ? null : new TranslationCache(options);
+        if (options.getStatementTimeout() > 0) {
+            RawPlanner.warmUp();
+        }
     }
 
     /**
@@ -30,10 +91,298 @@ public class SQLJSONParser {
      * @param dml The DML statement to be parsed.
      */
     public void parseDML(SchemaPlus context, String dml) throws Exception {
-        RawPlanner planner = new RawPlanner(context);
+        parseDML(context, dml, options.newDeadline());
+    }
+
+    /**
+     * Parse a DML statement with current schema, giving up once the deadline expires.
+     *
+     * @param dml      The DML statement to be parsed.
+     * @param deadline The given deadline.
+     */
+    public void parseDML(SchemaPlus context, String dml, Deadline deadline) throws Exception {
+        parseParameterizedDML(context, dml, deadline);
+    }
+
+    /**
+     * Parse a DML statement that may contain dynamic parameters with current schema, giving up once the deadline
+     * expires.
+     *
+     * @param dml      The DML statement to be parsed.
+     * @param deadline The given deadline.
+     * @return The types of the dynamic parameters of the statement, in order.
+     */
+    List<RelDataType> parseParameterizedDML(SchemaPlus context, String dml, Deadline deadline) throws Exception {
+        return parseDML(context, dml, deadline, null, null);
+    }
+
+    /**
+     * Parse a DML statement with current schema, giving up once the deadline expires. If the parser keeps a cache,
+     * the translation is recorded in it together with the definitions it depends on in the given schema.
+     *
+     * @param dml         The DML statement to be parsed.
+     * @param deadline    The given deadline.
+     * @param schema      The schema at the position of the statement, or null if the translation is not to be cached.
+     * @param fingerprint The fingerprint of the statement, or null if the translation is not to be cached.
+     * @return The types of the dynamic parameters of the statement, in order.
+     */
+    private List<RelDataType> parseDML(SchemaPlus context, String dml, Deadline deadline, CosetteSchema schema,
+                                       String fingerprint) throws Exception {
+        RawPlanner planner = new RawPlanner(context, deadline);
         SqlNode sqlNode = planner.parse(dml);
-        RelRoot relRoot = planner.rel(sqlNode);
-        rootList.add(relRoot);
+        RelNode projected = planner.rel(sqlNode).project();
+        Map<Normalization, Integer> before = normalizer == null ? Map.of() : new EnumMap<>(normalizer.getHits());
+        RelNode relNode = normalizer == null ? projected : normalizer.normalize(projected, deadline);
+        Environment environment = null;
+        ObjectNode query = null;
+        if (RelJSONShuttle.needsQueries(options.getSections())) {
+            environment = new Environment(translator, tableList, options.isColumnarValues(), deadline);
+            query = RelJSONShuttle.translate(relNode, environment);
+            queryList.add(FlatPlan.of(query));
+        }
+        Future<String> help = null;
+        if (options.includes(TranslationOptions.Section.HELP)) {
+            help = explain(relNode);
+            helpList.add(help);
+        }
+        if (cache != null && schema != null && query != null) {
+            record(fingerprint, schema, planner, environment, query, help, before);
+        }
+        List<RelDataType> parameters = new ArrayList<>();
+        for (RelDataTypeField parameter : planner.getParameterRowType().getFieldList()) {
+            parameters.add(parameter.getType());
+        }
+        return parameters;
+    }
+
+    /**
+     * Parse a statement of a script. DDL statements are applied to the given SchemaGenerator instance, and the other
+     * statements are parsed as DML statements with its current schema.
+     *
+     * @param generator The given SchemaGenerator instance.
+     * @param statement The statement to be parsed.
+     */
+    public void parseStatement(SchemaGenerator generator, SQLScript.Statement statement) throws Exception {
+        if (cache != null && statement.getKind() != SQLScript.Statement.Kind.QUERY) {
+            schemaVersion = TranslationCache.nextVersion(schemaVersion, statement.getFingerprint());
+        }
+        switch (statement.getKind()) {
+            case CREATE_TABLE:
+                generator.applyCreateTable(statement.getText());
+                break;
+            case CREATE_VIEW:
+                generator.applyCreateView(statement.getText());
+                break;
+            case DECLARE_FUNCTION:
+                generator.applyDeclareFunction(statement.getText());
+                break;
+            default:
+                if (cache == null || !RelJSONShuttle.needsQueries(options.getSections())) {
+                    parseDML(generator.extractSchema(), statement.getText());
+                    break;
+                }
+                TranslationCache.Entry cached = previousCache.find(statement.getFingerprint(), schemaVersion,
+                        generator.schema());
+                if (cached != null) {
+                    reuse(cached, generator.extractSchema());
+                } else {
+                    parseDML(generator.extractSchema(), statement.getText(), options.newDeadline(), generator.schema(),
+                            statement.getFingerprint());
+                }
+        }
+    }
+
+    /**
+     * Record the translation of a query in the cache. The tables scanned by the query are renumbered in the order the
+     * query first scans them, and the tables, the views and the declared functions it refers to are recorded with the
+     * hashes of their definitions.
+     *
+     * @param fingerprint The fingerprint of the query.
+     * @param schema      The schema at the position of the query.
+     * @param planner     The planner that converted the query.
+     * @param environment The environment the query was translated in.
+     * @param query       The translated query.
+     * @param help        The pending help entry of the query, or null.
+     * @param before      The number of times each normalization fired before the query.
+     */
+    private void record(String fingerprint, CosetteSchema schema, RawPlanner planner, Environment environment,
+                        ObjectNode query, Future<String> help, Map<Normalization, Integer> before) {
+        List<RelOptTable> referenced = environment.getReferencedTables();
+        int[] mapping = new int[tableList.size()];
+        List<List<String>> tables = new ArrayList<>();
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (int local = 0; local < referenced.size(); local += 1) {
+            RelOptTable table = referenced.get(local);
+            mapping[tableList.indexOf(table)] = local;
+            tables.add(table.getQualifiedName());
+            dependencies.add("table:" + Util.last(table.getQualifiedName()));
+        }
+        for (String view : planner.getExpandedViews()) {
+            dependencies.add("table:" + view);
+        }
+        for (String function : environment.getReferencedFunctions()) {
+            dependencies.add("function:" + function);
+        }
+        ObjectNode localQuery = query.deepCopy();
+        RelJSONShuttle.renumberScans(localQuery, mapping);
+        Map<Normalization, Integer> fired = new EnumMap<>(Normalization.class);
+        if (normalizer != null) {
+            normalizer.getHits().forEach((normalization, count) ->
+                    fired.put(normalization, count - before.getOrDefault(normalization, 0)));
+        }
+        Map<String, String> versions = TranslationCache.versions(schema, dependencies);
+        cache.add(new TranslationCache.Entry(fingerprint, schemaVersion, versions, tables, localQuery, help, fired));
+    }
+
+    /**
+     * Reuse a cached translation of a query, renumbering the tables it scans as in the other queries.
+     *
+     * @param entry   The cached translation.
+     * @param context The schema at the position of the query.
+     */
+    private void reuse(TranslationCache.Entry entry, SchemaPlus context) throws Exception {
+        int[] mapping = new int[entry.tables.size()];
+        for (int local = 0; local < mapping.length; local += 1) {
+            mapping[local] = identifyTable(entry.tables.get(local), context);
+        }
+        ObjectNode query = entry.query.deepCopy();
+        RelJSONShuttle.renumberScans(query, mapping);
+        queryList.add(FlatPlan.of(query));
+        if (options.includes(TranslationOptions.Section.HELP)) {
+            helpList.add(entry.help);
+        }
+        if (normalizer != null) {
+            normalizer.addHits(entry.normalizations);
+        }
+        cache.add(entry);
+    }
+
+    /**
+     * Find the index of a table in the tables seen so far, appending it if necessary.
+     *
+     * @param qualifiedName The qualified name of the table.
+     * @param context       The schema at the position of the query.
+     * @return The index of the table.
+     */
+    private int identifyTable(List<String> qualifiedName, SchemaPlus context) throws Exception {
+        if (resolver == null || resolver.getDefaultSchema() != context) {
+            resolver = new RawPlanner(context);
+        }
+        RelOptTable table = resolver.resolveTable(qualifiedName);
+        if (table == null) {
+            throw new RuntimeException("Unknown table " + qualifiedName + " in cached translation.");
+        }
+        if (!tableList.contains(table)) {
+            CosetteTable.deriveCheckConstraints(List.of(table));
+            tableList.add(table);
+        }
+        return tableList.indexOf(table);
+    }
+
+    /**
+     * @return The cache holding the translations of the parsed queries, or null if the parser does not keep a cache.
+     */
+    public TranslationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Record a statement that could not be parsed. The recorded errors are translated to the errors section.
+     *
+     * @param error The error of the statement.
+     */
+    public void recordError(StatementError error) {
+        errorList.add(error);
+    }
+
+    /**
+     * @return The recorded errors, in script order.
+     */
+    public List<StatementError> getErrors() {
+        return errorList;
+    }
+
+    /**
+     * Translate the parsed statements to a ObjectNode instance with the sections selected in the options. If some
+     * normalizations are selected, the normalizations section counts how many times each of them fired. The errors
+     * section is only present if some errors were recorded. <br>
+     * Format: {normalizations: {normalization: count}}
+     *
+     * @param mapper A ObjectMapper instance that could be used to generate JSON.
+     * @return The translated ObjectNode instance.
+     */
+    public ObjectNode toJSON(ObjectMapper mapper) {
+        Set<TranslationOptions.Section> sections = EnumSet.noneOf(TranslationOptions.Section.class);
+        sections.addAll(options.getSections());
+        sections.remove(TranslationOptions.Section.HELP);
+        List<JsonNode> queries = new ArrayList<>(queryList.size());
+        for (FlatPlan query : queryList) {
+            queries.add(query.toJSON());
+        }
+        ObjectNode mainObject = RelJSONShuttle.assemble(queries, tableList, mapper, sections);
+        if (options.includes(TranslationOptions.Section.HELP)) {
+            ArrayNode helpArray = mainObject.putArray("help");
+            for (Future<String> help : helpList) {
+                helpArray.add(explanation(help));
+            }
+        }
+        if (normalizer != null) {
+            ObjectNode normalizationObject = mainObject.putObject("normalizations");
+            normalizer.getHits().forEach((normalization, count) -> normalizationObject.put(normalization.getName(), count));
+        }
+        if (!errorList.isEmpty()) {
+            ArrayNode errorArray = mainObject.putArray("errors");
+            for (StatementError error : errorList) {
+                errorArray.add(error.toJSON(mapper));
+            }
+        }
+        return mainObject;
+    }
+
+    /**
+     * Create the explainer shared by all parsers. It only queues a few plans, and renders a plan on the calling thread
+     * once its queue is full, so the pending plans cannot pile up in memory however many parsers are running. Its
+     * threads stop when they are idle.
+     *
+     * @return The created explainer.
+     */
+    private static ThreadPoolExecutor createExplainer() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * threads), runnable -> {
+            Thread thread = new Thread(runnable, "cosette-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Render the help entry of a plan off the critical path, while the next statements are parsed.
+     *
+     * @param plan The given plan.
+     * @return The pending help entry.
+     */
+    private static Future<String> explain(RelNode plan) {
+        return explainer.submit(() -> plan.explain());
+    }
+
+    /**
+     * Wait for a help entry rendered by the explainer.
+     *
+     * @param help The given pending help entry.
+     * @return The rendered help entry.
+     */
+    static String explanation(Future<String> help) {
+        try {
+            return help.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rendering the help section.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Cannot render the help section.", e.getCause());
+        }
     }
 
     /**
@@ -42,11 +391,17 @@ public class SQLJSONParser {
      * @param file The given file.
      */
     public void dumpToJSON(File file) throws IOException {
-        ArrayList<RelNode> nodeList = new ArrayList<>();
-        for (RelRoot root : rootList) {
-            nodeList.add(root.project());
-        }
-        RelJSONShuttle.dumpToJSON(nodeList, file);
+        dumpTo(file, OutputFormat.JSON);
+    }
+
+    /**
+     * Dump the parsed statements to a file in the given format.
+     *
+     * @param file   The given file.
+     * @param format The given format.
+     */
+    public void dumpTo(File file, OutputFormat format) throws IOException {
+        format.getWriter().writeValue(file, toJSON(format.getMapper()));
     }
 
 }
@@ -0,0 +1,215 @@
+package org.cosette;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A SQLScript instance splits a script into statements separated by semicolons. Comments are removed from the
+ * statements and blank statements are skipped.
+ */
+public class SQLScript implements Iterable<SQLScript.Statement> {
+
+    private static final Pattern comment = Pattern.compile("--.*(\\n|$)");
+    private static final Pattern view = Pattern.compile("CREATE\\s+(OR\\s+REPLACE\\s+)?VIEW\\s");
+
+    private final List<Statement> statements;
+
+    /**
+     * Split the given script into statements.
+     *
+     * @param script The given script.
+     */
+    public SQLScript(String script) {
+        List<Statement> list = new ArrayList<>();
+        int start = 0;
+        while (start <= script.length()) {
+            int end = script.indexOf(';', start);
+            if (end < 0) {
+                end = script.length();
+            }
+            String raw = script.substring(start, end);
+            String text = comment.matcher(raw).replaceAll("\n").trim();
+            if (!text.isBlank()) {
+                int offset = start;
+                while (offset < end && Character.isWhitespace(script.charAt(offset))) {
+                    offset += 1;
+                }
+                list.add(new Statement(list.size(), offset, text));
+            }
+            start = end + 1;
+        }
+        statements = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Read and split a script.
+     *
+     * @param reader The given reader.
+     * @return The split script.
+     */
+    public static SQLScript read(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        int count;
+        while ((count = reader.read(buffer)) >= 0) {
+            builder.append(buffer, 0, count);
+        }
+        return new SQLScript(builder.toString());
+    }
+
+    /**
+     * Read and split a script file.
+     *
+     * @param file The given file.
+     * @return The split script.
+     */
+    public static SQLScript read(File file) throws IOException {
+        return new SQLScript(new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset()));
+    }
+
+    /**
+     * @return The statements in the script.
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+    @Override
+    public Iterator<Statement> iterator() {
+        return statements.iterator();
+    }
+
+    /**
+     * Normalize the layout of a statement. A run of whitespaces and comments becomes a single space, unless it spans
+     * lines between two quoted parts, since a line break can separate the parts of a string literal where a space
+     * cannot. String literals and identifiers quoted with double quotes or backticks are kept as they are.
+     *
+     * @param text The given statement.
+     * @return The normalized statement.
+     */
+    static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        int position = 0;
+        while (position < text.length()) {
+            char current = text.charAt(position);
+            if (current == '\'' || current == '"' || current == '`') {
+                int end = position + 1;
+                while (end < text.length() && text.charAt(end) != current) {
+                    end += 1;
+                }
+                end = Math.min(end + 1, text.length());
+                builder.append(text, position, end);
+                position = end;
+            } else if (Character.isWhitespace(current) || text.startsWith("/*", position)
+                    && !text.startsWith("/*+", position)) {
+                boolean lines = false;
+                while (position < text.length()) {
+                    if (Character.isWhitespace(text.charAt(position))) {
+                        lines |= text.charAt(position) == '\n';
+                        position += 1;
+                    } else if (text.startsWith("/*", position) && !text.startsWith("/*+", position)) {
+                        int end = text.indexOf("*/", position + 2);
+                        end = end < 0 ? text.length() : end + 2;
+                        lines |= text.substring(position, end).indexOf('\n') >= 0;
+                        position = end;
+                    } else {
+                        break;
+                    }
+                }
+                if (builder.length() > 0 && position < text.length()) {
+                    boolean quoted = builder.charAt(builder.length() - 1) == '\'' && text.charAt(position) == '\'';
+                    builder.append(lines && quoted ? '\n' : ' ');
+                }
+            } else {
+                builder.append(current);
+                position += 1;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A single statement in a script.
+     */
+    public static class Statement {
+
+        private final int index;
+        private final int offset;
+        private final String text;
+        private final Kind kind;
+        private String fingerprint;
+
+        Statement(int index, int offset, String text) {
+            this.index = index;
+            this.offset = offset;
+            this.text = text;
+            String upper = text.toUpperCase(Locale.ROOT);
+            if (upper.startsWith("CREATE TABLE")) {
+                kind = Kind.CREATE_TABLE;
+            } else if (view.matcher(upper).lookingAt()) {
+                kind = Kind.CREATE_VIEW;
+            } else if (upper.startsWith("DECLARE")) {
+                kind = Kind.DECLARE_FUNCTION;
+            } else {
+                kind = Kind.QUERY;
+            }
+        }
+
+        /**
+         * @return The position of the statement among the non-blank statements of the script.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The character offset of the statement in the script.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The statement without comments and surrounding whitespaces.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Compute the hash of the statement with its layout normalized, which does not depend on the position of the
+         * statement in the script. Block comments are removed, except optimizer hints, and every run of whitespaces
+         * is collapsed, while string literals and quoted identifiers are kept as they are.
+         *
+         * @return The SHA-256 hash of the normalized statement, in hexadecimal.
+         */
+        public synchronized String getFingerprint() {
+            if (fingerprint == null) {
+                fingerprint = TranslationCache.hash(normalize(text));
+            }
+            return fingerprint;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public enum Kind {
+            CREATE_TABLE,
+            CREATE_VIEW,
+            DECLARE_FUNCTION,
+            QUERY
+        }
+
+    }
+
+}
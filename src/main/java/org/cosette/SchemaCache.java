@@ -0,0 +1,258 @@
+package org.cosette;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SchemaCache instance keeps built schemas of many tenants in a resident process. Schemas are keyed by a schema id or
+ * by the hash of their DDL script, and are evicted in least-recently-used order once the cache holds too many schemas
+ * or too many estimated bytes. The root SchemaPlus of every cached schema is built once and kept with it.
+ */
+public class SchemaCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long loads = 0;
+    private long evictions = 0;
+
+    /**
+     * Create a cache with the given bounds.
+     *
+     * @param entryLimit The maximum number of cached schemas.
+     * @param byteLimit  The maximum total estimated size of the cached schemas, in bytes.
+     */
+    public SchemaCache(int entryLimit, long byteLimit) {
+        if (entryLimit < 1 || byteLimit < 1) {
+            throw new IllegalArgumentException("Cache bounds must be positive.");
+        }
+        maxEntries = entryLimit;
+        maxBytes = byteLimit;
+    }
+
+    /**
+     * Compute the key of a DDL script.
+     *
+     * @param ddl The given DDL script.
+     * @return The SHA-256 hash of the script, in hexadecimal.
+     */
+    public static String key(String ddl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(ddl.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Look up a cached schema.
+     *
+     * @param id The given schema id.
+     * @return The cached schema, or null if it is not cached.
+     */
+    public synchronized CosetteSchema get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return entry.schema;
+    }
+
+    /**
+     * Look up a cached schema, and load it if it is not cached. The schema of the loaded SchemaGenerator instance is
+     * sealed and cached as it is, so the loader must not keep using it. Loading happens outside the lock of the cache,
+     * so two threads missing the same id at the same time may both load it.
+     *
+     * @param id     The given schema id.
+     * @param loader The loader to be called on a miss.
+     * @return The cached or the loaded schema.
+     */
+    public CosetteSchema get(String id, Loader loader) throws Exception {
+        CosetteSchema schema = get(id);
+        if (schema == null) {
+            schema = loader.load(id).schema();
+            schema.seal();
+            insert(id, schema);
+            synchronized (this) {
+                loads += 1;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Look up the schema built by a DDL script, keyed by the hash of the script, and build it if it is not cached.
+     *
+     * @param ddl The given DDL script.
+     * @return The cached or the built schema.
+     */
+    public CosetteSchema getOrBuild(String ddl) throws Exception {
+        return get(key(ddl), id -> {
+            SchemaGenerator generator = new SchemaGenerator();
+            List<StatementError> errors = generator.applyScript(new SQLScript(ddl));
+            if (!errors.isEmpty()) {
+                throw new Exception(errors.get(0).toString());
+            }
+            return generator;
+        });
+    }
+
+    /**
+     * Cache the current schema of a SchemaGenerator instance, replacing the schema cached with the same id.
+     *
+     * @param id        The given schema id.
+     * @param generator The given SchemaGenerator instance.
+     * @return The cached schema, which is a sealed copy of the schema of the SchemaGenerator instance.
+     */
+    public CosetteSchema put(String id, SchemaGenerator generator) {
+        CosetteSchema schema = generator.schema().copy();
+        schema.seal();
+        insert(id, schema);
+        return schema;
+    }
+
+    private void insert(String id, CosetteSchema schema) {
+        schema.plus();
+        Entry entry = new Entry(schema, schema.estimatedSize());
+        synchronized (this) {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                residentBytes -= previous.size;
+            }
+            residentBytes += entry.size;
+            evict();
+        }
+    }
+
+    /**
+     * Remove a schema from the cache.
+     *
+     * @param id The given schema id.
+     */
+    public synchronized void invalidate(String id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            residentBytes -= entry.size;
+        }
+    }
+
+    /**
+     * @return The current statistics of the cache.
+     */
+    public synchronized Statistics statistics() {
+        return new Statistics(hits, misses, loads, evictions, entries.size(), residentBytes);
+    }
+
+    /**
+     * Evict the least recently used schemas until the cache is within its bounds. The most recently used schema is
+     * always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > 1 && (entries.size() > maxEntries || residentBytes > maxBytes)) {
+            residentBytes -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions += 1;
+        }
+    }
+
+    /**
+     * Load a schema that is not cached.
+     */
+    public interface Loader {
+        SchemaGenerator load(String id) throws Exception;
+    }
+
+    private static final class Entry {
+
+        final CosetteSchema schema;
+        final long size;
+
+        Entry(CosetteSchema cached, long estimated) {
+            schema = cached;
+            size = estimated;
+        }
+
+    }
+
+    /**
+     * A snapshot of the counters of a SchemaCache instance.
+     */
+    public static final class Statistics {
+
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long evictions;
+        private final int residentCount;
+        private final long residentBytes;
+
+        Statistics(long hitCount, long missCount, long loadCount, long evictionCount, int count, long bytes) {
+            hits = hitCount;
+            misses = missCount;
+            loads = loadCount;
+            evictions = evictionCount;
+            residentCount = count;
+            residentBytes = bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getResidentCount() {
+            return residentCount;
+        }
+
+        /**
+         * @return The total estimated size of the cached schemas, in bytes.
+         */
+        public long getResidentBytes() {
+            return residentBytes;
+        }
+
+        /**
+         * @return The ratio of hits to lookups, or 0 if there is no lookup yet.
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", loads=" + loads + ", evictions=" + evictions
+                    + ", resident=" + residentCount + ", bytes=" + residentBytes
+                    + String.format(", hitRate=%.3f", getHitRate());
+        }
+
+    }
+
+}
@@ -1,28 +1,20 @@
 package org.cosette;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.apache.calcite.config.Lex;
-import org.apache.calcite.jdbc.CalciteSchema;
-import org.apache.calcite.rel.logical.LogicalFilter;
-import org.apache.calcite.rel.type.RelDataType;
-import org.apache.calcite.rel.type.RelDataTypeFactory;
-import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.schema.*;
-import org.apache.calcite.schema.impl.*;
 import org.apache.calcite.sql.*;
-import org.apache.calcite.sql.ddl.SqlCheckConstraint;
-import org.apache.calcite.sql.ddl.SqlColumnDeclaration;
 import org.apache.calcite.sql.ddl.SqlCreateTable;
-import org.apache.calcite.sql.ddl.SqlKeyConstraint;
+import org.apache.calcite.sql.ddl.SqlCreateView;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
-import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.parser.ddl.SqlDdlParserImpl;
-import org.apache.calcite.sql.type.SqlTypeName;
-import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.SourceStringReader;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -67,17 +59,26 @@ public class SchemaGenerator {
             .put("INTEGER", int.class)
             .build();
     private static final Pattern functionPattern = Pattern.compile("(?i)DECLARE\\s+(?<type>SCALAR|AGGREGATE)\\s+FUNCTION\\s+(?<identifier>\\w+)\\s*\\((?<source>.*)\\)\\s+RETURNS\\s+(?<target>.+)");
-    private static final SqlParser.Config schemaParserConfig = SqlParser.Config.DEFAULT
+    static final SqlParser.Config schemaParserConfig = SqlParser.Config.DEFAULT
             .withParserFactory(SqlDdlParserImpl.FACTORY)
             .withLex(Lex.MYSQL);
     private final CosetteSchema schema;
-    private final Map<String, Function> declaredFunctions = new HashMap<>();
+    private SqlAbstractParserImpl schemaParser;
 
     /**
      * Create a SchemaGenerator instance by setting up a connection to JDBC.
      */
     public SchemaGenerator() {
-        schema = new CosetteSchema(this);
+        schema = new CosetteSchema();
+    }
+
+    /**
+     * Create a SchemaGenerator instance that works on the given schema.
+     *
+     * @param base The given schema.
+     */
+    SchemaGenerator(CosetteSchema base) {
+        schema = base;
     }
 
     /**
@@ -86,9 +87,75 @@ public class SchemaGenerator {
      * @param createTable The given CREATE TABLE statement.
      */
     public void applyCreateTable(String createTable) throws Exception {
-        SqlParser schemaParser = SqlParser.create(createTable, schemaParserConfig);
-        SqlNode schemaNode = schemaParser.parseStmt();
-        schema.addTable((SqlCreateTable) schemaNode);
+        schema.addTable((SqlCreateTable) parseSchemaStatement(createTable));
+    }
+
+    /**
+     * Execute a CREATE VIEW statement. The query of the view is parsed and validated here once, and every query
+     * referring to the view reuses the validated query.
+     *
+     * @param createView The given CREATE VIEW statement.
+     */
+    public void applyCreateView(String createView) throws Exception {
+        schema.addView((SqlCreateView) parseSchemaStatement(createView));
+    }
+
+    /**
+     * Execute all DDL statements in a script. The CREATE TABLE statements share one parser instance, and a failing
+     * statement is recorded without aborting the rest of the script.
+     *
+     * @param script The given script.
+     * @return The errors of the failed statements.
+     */
+    public List<StatementError> applyScript(SQLScript script) {
+        List<StatementError> errors = new ArrayList<>();
+        for (SQLScript.Statement statement : script) {
+            try {
+                switch (statement.getKind()) {
+                    case CREATE_TABLE:
+                        applyCreateTable(statement.getText());
+                        break;
+                    case CREATE_VIEW:
+                        applyCreateView(statement.getText());
+                        break;
+                    case DECLARE_FUNCTION:
+                        applyDeclareFunction(statement.getText());
+                        break;
+                    default:
+                        throw new Exception("Not a DDL statement.");
+                }
+            } catch (Exception e) {
+                errors.add(new StatementError(statement, String.valueOf(e.getMessage())));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Parse a DDL statement, reusing the parser instance of the previous statement if there is one.
+     *
+     * @param statement The given DDL statement.
+     * @return The parsed statement.
+     */
+    private SqlNode parseSchemaStatement(String statement) throws SqlParseException {
+        Reader reader = new SourceStringReader(statement);
+        if (schemaParser == null) {
+            schemaParser = schemaParserConfig.parserFactory().getParser(reader);
+        } else {
+            schemaParser.ReInit(reader);
+        }
+        schemaParser.setOriginalSql(statement);
+        schemaParser.setTabSize(1);
+        schemaParser.setQuotedCasing(schemaParserConfig.quotedCasing());
+        schemaParser.setUnquotedCasing(schemaParserConfig.unquotedCasing());
+        schemaParser.setIdentifierMaxLength(schemaParserConfig.identifierMaxLength());
+        schemaParser.setConformance(schemaParserConfig.conformance());
+        schemaParser.switchTo(SqlAbstractParserImpl.LexicalState.forConfig(schemaParserConfig));
+        try {
+            return schemaParser.parseSqlStmtEof();
+        } catch (Throwable e) {
+            throw schemaParser.normalizeException(e);
+        }
     }
 
     /**
@@ -104,37 +171,53 @@ public class SchemaGenerator {
         String identifier = matcher.group("identifier");
         String[] source = matcher.group("source").split(",");
         String target = matcher.group("target").split("\\(")[0].trim().toUpperCase();
-        Class<?>[] parameters = new Class[source.length];
+        List<String> arguments = new ArrayList<>();
+        for (String arg : source) {
+            arguments.add(arg.split("\\(")[0].trim().toUpperCase());
+        }
+        boolean aggregate = !matcher.group("type").equalsIgnoreCase("SCALAR");
+        declareFunction(new FunctionSignature(identifier, aggregate, arguments, target));
+    }
+
+    /**
+     * Register a custom function with the given signature.
+     *
+     * @param signature The given function signature.
+     */
+    void declareFunction(FunctionSignature signature) {
+        String target = signature.result;
         if (!toPrimitive.containsKey(target)) {
             throw new RuntimeException("Invalid return type: " + target);
         }
-        for (int i = 0; i < source.length; i += 1) {
-            String arg = source[i].split("\\(")[0].trim().toUpperCase();
+        List<Class<?>> parameters = new ArrayList<>();
+        for (String arg : signature.arguments) {
             if (!toPrimitive.containsKey(arg)) {
                 throw new RuntimeException("Invalid argument type: " + arg);
             }
-            parameters[i] = toPrimitive.get(arg);
+            parameters.add(toPrimitive.get(arg));
         }
-        Function customFunction;
-        Constructor<Method> methodConstructor = Method.class.getDeclaredConstructor(Class.class, String.class, Class[].class, Class.class, Class[].class, int.class, int.class, String.class, byte[].class, byte[].class, byte[].class);
-        methodConstructor.setAccessible(true);
-        if (matcher.group("type").equalsIgnoreCase("SCALAR")) {
-            Method scalarFunction = methodConstructor.newInstance(SchemaGenerator.class, "cosetteFunction", parameters, toPrimitive.get(target), null, 0, 0, "", null, null, null);
-            customFunction = ScalarFunctionImpl.createUnsafe(scalarFunction);
-        } else {
-            ReflectiveFunctionBase.ParameterListBuilder sourceParameters =
-                    ReflectiveFunctionBase.builder();
-            ImmutableList.Builder<Class<?>> sourceTypes = ImmutableList.builder();
-            for (Class<?> clazz : parameters) {
-                sourceParameters.add(clazz, clazz.getName(), false);
-                sourceTypes.add(clazz);
-            }
-            Method nullFunction = methodConstructor.newInstance(SchemaGenerator.class, "cosetteFunction", parameters, toPrimitive.get(target), null, 0, 0, "", null, null, null);
-            Constructor<AggregateFunctionImpl> aggregateFunctionConstructor = AggregateFunctionImpl.class.getDeclaredConstructor(Class.class, List.class, List.class, Class.class, Class.class, Method.class, Method.class, Method.class, Method.class);
-            aggregateFunctionConstructor.setAccessible(true);
-            customFunction = aggregateFunctionConstructor.newInstance(SchemaGenerator.class, sourceParameters.build(), sourceTypes.build(), toPrimitive.get(target), toPrimitive.get(target), nullFunction, nullFunction, null, null);
-        }
-        declaredFunctions.put(identifier, customFunction);
+        DeclaredFunction customFunction = DeclaredFunction.create(signature, parameters, toPrimitive.get(target));
+        schema.addFunction(signature.identifier, customFunction);
+    }
+
+    /**
+     * Save the tables, the declared functions and the views to a binary snapshot, which could be restored by
+     * loadSnapshot(...) without parsing any DDL statement again. Only the queries of the views are validated again.
+     *
+     * @param file The given file.
+     */
+    public void saveSnapshot(File file) throws IOException {
+        SchemaSnapshot.write(this, file);
+    }
+
+    /**
+     * Restore a SchemaGenerator instance from a binary snapshot created by saveSnapshot(...).
+     *
+     * @param file The given file.
+     * @return The restored SchemaGenerator instance.
+     */
+    public static SchemaGenerator loadSnapshot(File file) throws IOException {
+        return SchemaSnapshot.read(file);
     }
 
     /**
@@ -148,118 +231,44 @@ public class SchemaGenerator {
      * @return The declared custom functions.
      */
     public Map<String, Function> customFunctions() {
-        return declaredFunctions;
+        return schema.functions;
     }
 
-}
-
-class CosetteTable extends AbstractTable {
-
-    final CosetteSchema owner;
-    final List<Boolean> columnNullabilities = new ArrayList<>();
-    final List<String> columnNames = new ArrayList<>();
-    final List<SqlTypeName> columnTypeNames = new ArrayList<>();
-    final List<SqlBasicCall> checkConstraints = new ArrayList<>();
-    final Set<ImmutableBitSet> columnKeys = new HashSet<>();
-    final SqlIdentifier id;
-
-    public CosetteTable(CosetteSchema schema, SqlIdentifier name) {
-        owner = schema;
-        id = name;
-    }
-
-    @Override
-    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
-        List<RelDataType> fields = new ArrayList<>();
-        for (int index = 0; index < columnNames.size(); index += 1) {
-            fields.add(typeFactory.createTypeWithNullability(typeFactory.createSqlType(columnTypeNames.get(index)), columnNullabilities.get(index)));
+    /**
+     * @return The signatures of the declared custom functions.
+     */
+    Collection<FunctionSignature> customSignatures() {
+        List<FunctionSignature> signatures = new ArrayList<>();
+        for (Function function : schema.functions.values()) {
+            signatures.add(((DeclaredFunction) function).signature);
         }
-        return typeFactory.createStructType(fields, columnNames);
-    }
-
-    @Override
-    public Statistic getStatistic() {
-        return Statistics.of(0, new ArrayList<>(columnKeys));
+        return signatures;
     }
 
-    public List<RexNode> deriveCheckConstraint() {
-        List<RexNode> derivedConstraints = new ArrayList<>();
-        RawPlanner planner = new RawPlanner(owner.plus());
-        for (SqlBasicCall check : checkConstraints) {
-            SqlSelect wrapper = new SqlSelect(SqlParserPos.ZERO, SqlNodeList.EMPTY, SqlNodeList.SINGLETON_STAR,
-                    this.id, check, null, null, SqlNodeList.EMPTY, null, null, null, null);
-            try {
-                planner.parse(wrapper.toString());
-                LogicalFilter filter = (LogicalFilter) planner.rel(check).project().getInput(0);
-                derivedConstraints.add(filter.getCondition());
-            } catch (Exception ignore) {
-
-            }
-        }
-        return derivedConstraints;
+    /**
+     * @return The underlying schema.
+     */
+    CosetteSchema schema() {
+        return schema;
     }
 
-}
-
-class CosetteSchema extends AbstractSchema {
-
-    final HashMap<String, Table> tables = new HashMap<>();
-    final SchemaGenerator owner;
-
-    public CosetteSchema(SchemaGenerator source) {
-        owner = source;
-    }
+    /**
+     * The signature of a declared custom function, using the type names in its declaration.
+     */
+    static final class FunctionSignature {
 
-    public void addTable(SqlCreateTable createTable) throws Exception {
-        if (createTable.columnList == null) {
-            throw new Exception("No column in table " + createTable.name);
-        }
-        CosetteTable cosetteTable = new CosetteTable(this, createTable.name);
+        final String identifier;
+        final boolean aggregate;
+        final List<String> arguments;
+        final String result;
 
-        for (SqlNode column : createTable.columnList) {
-            switch (column.getKind()) {
-                case CHECK:
-                    cosetteTable.checkConstraints.add((SqlBasicCall) ((SqlCheckConstraint) column).getOperandList().get(1));
-                    break;
-                case COLUMN_DECL:
-                    SqlColumnDeclaration decl = (SqlColumnDeclaration) column;
-                    cosetteTable.columnNames.add(decl.name.toString());
-                    cosetteTable.columnTypeNames.add(SqlTypeName.get(decl.dataType.getTypeName().toString()));
-                    cosetteTable.columnNullabilities.add(decl.strategy != ColumnStrategy.NOT_NULLABLE);
-                    break;
-                case FOREIGN_KEY:
-                    System.err.println("Foreign key constraint is not implemented in cosette yet.");
-                    break;
-                case PRIMARY_KEY:
-                case UNIQUE:
-                    SqlKeyConstraint cons = (SqlKeyConstraint) column;
-                    List<Integer> keys = new ArrayList<>();
-                    for (SqlNode id : (SqlNodeList) cons.getOperandList().get(1)) {
-                        int index = cosetteTable.columnNames.indexOf(id.toString());
-                        keys.add(index);
-                        if (column.getKind() == SqlKind.PRIMARY_KEY) {
-                            cosetteTable.columnNullabilities.set(index, false);
-                        }
-                    }
-                    cosetteTable.columnKeys.add(ImmutableBitSet.of(keys));
-                    break;
-                default:
-                    throw new Exception("Unsupported declaration type " + column.getKind() + " in table " + createTable.name);
-            }
+        FunctionSignature(String identifier, boolean aggregate, List<String> arguments, String result) {
+            this.identifier = identifier;
+            this.aggregate = aggregate;
+            this.arguments = List.copyOf(arguments);
+            this.result = result;
         }
-        tables.put(createTable.name.toString(), cosetteTable);
-    }
-
-    protected Map<String, Table> getTableMap() {
-        return tables;
-    }
 
-    public SchemaPlus plus() {
-        SchemaPlus raw = CalciteSchema.createRootSchema(true, false, "Cosette", this).plus();
-        for (String fn : owner.customFunctions().keySet()) {
-            raw.add(fn, owner.customFunctions().get(fn));
-        }
-        return raw;
     }
 
 }
@@ -0,0 +1,69 @@
+package org.cosette;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A SchemaRegistry instance holds the current version of a schema for a resident translation service. Readers take the
+ * current version without locking and keep using it for as long as they need. Writers apply DDL statements to a
+ * private copy of the current version and then publish the copy as the new version.
+ */
+public class SchemaRegistry {
+
+    private final AtomicReference<CosetteSchema> current;
+    private final Object writer = new Object();
+
+    /**
+     * Create a registry with an empty schema.
+     */
+    public SchemaRegistry() {
+        this(new SchemaGenerator());
+    }
+
+    /**
+     * Create a registry with the current schema of the given SchemaGenerator instance. Later changes to the
+     * SchemaGenerator instance are not seen by the registry.
+     *
+     * @param generator The given SchemaGenerator instance.
+     */
+    public SchemaRegistry(SchemaGenerator generator) {
+        CosetteSchema initial = generator.schema().copy();
+        initial.seal();
+        current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * @return The current version of the schema, which never changes.
+     */
+    public CosetteSchema current() {
+        return current.get();
+    }
+
+    /**
+     * Apply the DDL statements of a script and publish the result as the new version of the schema. Writers are
+     * serialized, while readers keep using the version they started with.
+     *
+     * @param script The given script.
+     * @return The errors of the failed statements. The other statements are still applied.
+     */
+    public List<StatementError> apply(SQLScript script) {
+        synchronized (writer) {
+            CosetteSchema next = current.get().copy();
+            List<StatementError> errors = new SchemaGenerator(next).applyScript(script);
+            next.seal();
+            current.set(next);
+            return errors;
+        }
+    }
+
+    /**
+     * Apply the DDL statements of a script and publish the result as the new version of the schema.
+     *
+     * @param script The given script.
+     * @return The errors of the failed statements. The other statements are still applied.
+     */
+    public List<StatementError> apply(String script) {
+        return apply(new SQLScript(script));
+    }
+
+}
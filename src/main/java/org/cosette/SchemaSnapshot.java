@@ -0,0 +1,232 @@
+package org.cosette;
+
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A binary snapshot of the tables, the declared functions and the views in a SchemaGenerator instance. All strings are
+ * interned in a table at the beginning of the snapshot and are referred to by their indices afterwards. Tables are
+ * stored in the order they were defined, and their check constraints are derived again once the tables and the
+ * functions are all restored. Views are stored in the order they were last validated, after the views they refer to,
+ * and are validated again when they are restored. Snapshots are read through a memory-mapped buffer.
+ */
+final class SchemaSnapshot {
+
+    private static final int MAGIC = 0x434F5353;
+    private static final int VERSION = 2;
+    private static final int NONE = -1;
+
+    private SchemaSnapshot() {
+    }
+
+    /**
+     * Write the state of a SchemaGenerator instance to a file.
+     *
+     * @param generator The given SchemaGenerator instance.
+     * @param file      The given file.
+     */
+    static void write(SchemaGenerator generator, File file) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(body);
+
+        List<CosetteTable> tables = new ArrayList<>();
+        for (Table table : generator.schema().tables.values()) {
+            if (table instanceof CosetteTable) {
+                tables.add((CosetteTable) table);
+            }
+        }
+        output.writeInt(tables.size());
+        for (CosetteTable cosetteTable : tables) {
+            output.writeInt(cosetteTable.id.names.size());
+            for (String name : cosetteTable.id.names) {
+                output.writeInt(intern(strings, name));
+            }
+            output.writeInt(cosetteTable.columnCount());
+            for (int index = 0; index < cosetteTable.columnCount(); index += 1) {
+                SqlTypeName typeName = cosetteTable.columnTypeName(index);
+                output.writeInt(intern(strings, cosetteTable.columnName(index)));
+                output.writeInt(typeName == null ? NONE : intern(strings, typeName.name()));
+                output.writeBoolean(cosetteTable.isNullable(index));
+            }
+            output.writeInt(cosetteTable.columnKeys.size());
+            for (ImmutableBitSet key : cosetteTable.columnKeys) {
+                output.writeInt(key.cardinality());
+                for (int column : key) {
+                    output.writeInt(column);
+                }
+            }
+            output.writeInt(cosetteTable.checkConstraints.size());
+            for (SqlBasicCall check : cosetteTable.checkConstraints) {
+                output.writeInt(intern(strings, check.toString()));
+            }
+        }
+
+        Collection<SchemaGenerator.FunctionSignature> signatures = generator.customSignatures();
+        output.writeInt(signatures.size());
+        for (SchemaGenerator.FunctionSignature signature : signatures) {
+            output.writeInt(intern(strings, signature.identifier));
+            output.writeBoolean(signature.aggregate);
+            output.writeInt(signature.arguments.size());
+            for (String argument : signature.arguments) {
+                output.writeInt(intern(strings, argument));
+            }
+            output.writeInt(intern(strings, signature.result));
+        }
+
+        List<CosetteView> views = generator.schema().views;
+        output.writeInt(views.size());
+        for (CosetteView view : views) {
+            output.writeInt(view.id.names.size());
+            for (String name : view.id.names) {
+                output.writeInt(intern(strings, name));
+            }
+            output.writeInt(intern(strings, view.query));
+            output.writeInt(view.columnNames.size());
+            for (String column : view.columnNames) {
+                output.writeInt(intern(strings, column));
+            }
+        }
+        output.flush();
+
+        try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            snapshot.writeInt(MAGIC);
+            snapshot.writeInt(VERSION);
+            snapshot.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                snapshot.writeInt(bytes.length);
+                snapshot.write(bytes);
+            }
+            body.writeTo(snapshot);
+        }
+    }
+
+    /**
+     * Restore a SchemaGenerator instance from a file.
+     *
+     * @param file The given file.
+     * @return The restored SchemaGenerator instance.
+     */
+    static SchemaGenerator read(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a schema snapshot: " + file);
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported schema snapshot version " + version + " in " + file);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int index = 0; index < strings.length; index += 1) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        SchemaGenerator generator = new SchemaGenerator();
+        CosetteSchema schema = generator.schema();
+        SqlParser.Config expressionConfig = SchemaGenerator.schemaParserConfig;
+        try {
+            List<CosetteTable> tables = new ArrayList<>();
+            int tableCount = buffer.getInt();
+            for (int table = 0; table < tableCount; table += 1) {
+                List<String> names = new ArrayList<>();
+                int nameCount = buffer.getInt();
+                for (int index = 0; index < nameCount; index += 1) {
+                    names.add(strings[buffer.getInt()]);
+                }
+                CosetteTable cosetteTable = new CosetteTable(schema, new SqlIdentifier(names, SqlParserPos.ZERO));
+                int columnCount = buffer.getInt();
+                for (int index = 0; index < columnCount; index += 1) {
+                    String name = strings[buffer.getInt()];
+                    int typeName = buffer.getInt();
+                    cosetteTable.addColumn(name, typeName == NONE ? null : SqlTypeName.valueOf(strings[typeName]), buffer.get() != 0);
+                }
+                int keyCount = buffer.getInt();
+                for (int index = 0; index < keyCount; index += 1) {
+                    cosetteTable.columnKeys.add(readBitSet(buffer));
+                }
+                int checkCount = buffer.getInt();
+                for (int index = 0; index < checkCount; index += 1) {
+                    SqlParser expressionParser = SqlParser.create(strings[buffer.getInt()], expressionConfig);
+                    cosetteTable.checkConstraints.add((SqlBasicCall) expressionParser.parseExpression());
+                }
+                tables.add(cosetteTable);
+            }
+
+            int functionCount = buffer.getInt();
+            for (int function = 0; function < functionCount; function += 1) {
+                String identifier = strings[buffer.getInt()];
+                boolean aggregate = buffer.get() != 0;
+                List<String> arguments = new ArrayList<>();
+                int argumentCount = buffer.getInt();
+                for (int index = 0; index < argumentCount; index += 1) {
+                    arguments.add(strings[buffer.getInt()]);
+                }
+                String result = strings[buffer.getInt()];
+                generator.declareFunction(new SchemaGenerator.FunctionSignature(identifier, aggregate, arguments, result));
+            }
+            schema.addTables(tables);
+
+            int viewCount = version < 2 ? 0 : buffer.getInt();
+            for (int view = 0; view < viewCount; view += 1) {
+                List<String> names = new ArrayList<>();
+                int nameCount = buffer.getInt();
+                for (int index = 0; index < nameCount; index += 1) {
+                    names.add(strings[buffer.getInt()]);
+                }
+                String query = strings[buffer.getInt()];
+                List<String> columns = new ArrayList<>();
+                int columnCount = buffer.getInt();
+                for (int index = 0; index < columnCount; index += 1) {
+                    columns.add(strings[buffer.getInt()]);
+                }
+                schema.addView(new CosetteView(schema, new SqlIdentifier(names, SqlParserPos.ZERO), query, columns));
+            }
+        } catch (SqlParseException | RuntimeException e) {
+            throw new IOException("Corrupted schema snapshot " + file + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new IOException("Cannot restore schema snapshot " + file + ": " + e.getMessage(), e);
+        }
+        return generator;
+    }
+
+    /**
+     * Find the index of a string in the string table, appending it if necessary.
+     *
+     * @param strings The string table.
+     * @param string  The given string.
+     * @return The index of the given string.
+     */
+    private static int intern(Map<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+
+    private static ImmutableBitSet readBitSet(ByteBuffer buffer) {
+        int[] columns = new int[buffer.getInt()];
+        for (int index = 0; index < columns.length; index += 1) {
+            columns[index] = buffer.getInt();
+        }
+        return ImmutableBitSet.of(columns);
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Locale;
+
+/**
+ * A StatementError instance records why a statement in a script could not be processed.
+ */
+public class StatementError {
+
+    private final int index;
+    private final int offset;
+    private final String statement;
+    private final String message;
+    private final Kind kind;
+
+    /**
+     * Create an error for the given statement.
+     *
+     * @param source The statement that failed.
+     * @param reason The message describing the failure.
+     */
+    public StatementError(SQLScript.Statement source, String reason) {
+        this(source, reason, Kind.FAILED);
+    }
+
+    /**
+     * Create an error of the given kind for the given statement.
+     *
+     * @param source The statement that failed.
+     * @param reason The message describing the failure.
+     * @param type   The kind of the failure.
+     */
+    public StatementError(SQLScript.Statement source, String reason, Kind type) {
+        kind = type;
+        index = source.getIndex();
+        offset = source.getOffset();
+        statement = source.getText();
+        message = reason;
+    }
+
+    /**
+     * @return The position of the statement among the non-blank statements of the script.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The character offset of the statement in the script.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Translate the error to a ObjectNode instance. <br>
+     * Format: {index: index, offset: offset, kind: kind, message: message}
+     *
+     * @param mapper A ObjectMapper instance that could be used to generate JSON.
+     * @return The translated ObjectNode instance.
+     */
+    public ObjectNode toJSON(ObjectMapper mapper) {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("index", index);
+        error.put("offset", offset);
+        error.put("kind", kind.toString().toLowerCase(Locale.ROOT));
+        error.put("message", message);
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "In statement:\n" + statement.replaceAll("(?m)^", "\t") + "\n" + message;
+    }
+
+    public enum Kind {
+        FAILED,
+        TIMEOUT
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.cosette;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A Translation instance holds the JSON translation of a script, together with the errors of the statements that could
+ * not be translated.
+ */
+public class Translation {
+
+    private final ObjectMapper mapper;
+    private final ObjectNode json;
+    private final List<StatementError> errors;
+
+    Translation(ObjectMapper writer, ObjectNode translated, List<StatementError> failed) {
+        mapper = writer;
+        json = translated;
+        errors = List.copyOf(failed);
+    }
+
+    /**
+     * @return The translated ObjectNode instance.
+     */
+    public ObjectNode getJSON() {
+        return json;
+    }
+
+    /**
+     * @return The errors of the statements that could not be translated, in script order.
+     */
+    public List<StatementError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return The translation in JSON format, encoded in UTF-8.
+     */
+    public byte[] toBytes() throws IOException {
+        return mapper.writeValueAsBytes(json);
+    }
+
+    /**
+     * Encode the translation in the given format.
+     *
+     * @param format The given format.
+     * @return The encoded translation.
+     */
+    public byte[] toBytes(OutputFormat format) throws IOException {
+        return format.getWriter().writeValueAsBytes(json);
+    }
+
+    /**
+     * Write the translation to a stream in JSON format. The stream is not closed.
+     *
+     * @param stream The given stream.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(stream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        writeTo(generator);
+        generator.close();
+    }
+
+    /**
+     * Write the translation to a stream in the given format. The stream is not closed.
+     *
+     * @param stream The given stream.
+     * @param format The given format.
+     */
+    public void writeTo(OutputStream stream, OutputFormat format) throws IOException {
+        JsonGenerator generator = format.getMapper().getFactory().createGenerator(stream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        format.getWriter().writeValue(generator, json);
+        generator.close();
+    }
+
+    /**
+     * Write the translation to a JsonGenerator instance.
+     *
+     * @param generator The given JsonGenerator instance.
+     */
+    public void writeTo(JsonGenerator generator) throws IOException {
+        mapper.writeTree(generator, json);
+        generator.flush();
+    }
+
+}
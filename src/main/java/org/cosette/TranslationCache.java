@@ -0,0 +1,262 @@
+package org.cosette;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A TranslationCache instance keeps the translations of the queries of a file, so that processing the file again only
+ * translates the queries that changed or that depend on a changed definition. Entries are keyed by the fingerprint of
+ * their query, which ignores its layout and its position in the file. Every entry records the version of the schema
+ * at the position of its query, that is a hash of the DDL statements before it, and the dependencies of its query,
+ * that is the tables, the views and the declared functions it refers to, together with a hash of their definitions.
+ * An entry is reused for a query with the same fingerprint if the schema version is the same, or else if the
+ * definitions it depends on are unchanged at the position of the query. The queries are stored with table indices
+ * local to each query, so they can be reused wherever they appear in the file. <br>
+ * Format: {format: version, options: signature, statements: [{fingerprint: hash, schema: version,
+ * dependencies: {dependency: hash}, tables: [[name]], query: {query}, help: help,
+ * normalizations: {normalization: count}}]}
+ */
+public final class TranslationCache {
+
+    private static final int FORMAT = 2;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String signature;
+    private final Map<String, List<Entry>> entries = new LinkedHashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Create an empty cache for translations made with the given options.
+     *
+     * @param options The given options.
+     */
+    public TranslationCache(TranslationOptions options) {
+        signature = signature(options);
+    }
+
+    /**
+     * Read a cache file. A missing or unreadable file, or a file written by another version or with other options,
+     * gives an empty cache.
+     *
+     * @param file    The given file.
+     * @param options The options of the translations to be made.
+     * @return The read cache.
+     */
+    public static TranslationCache read(File file, TranslationOptions options) throws IOException {
+        TranslationCache cache = new TranslationCache(options);
+        if (!file.isFile()) {
+            return cache;
+        }
+        JsonNode root;
+        try {
+            root = mapper.readTree(file);
+        } catch (JsonProcessingException e) {
+            return cache;
+        }
+        if (root == null || root.path("format").asInt() != FORMAT
+                || !root.path("options").asText().equals(cache.signature)) {
+            return cache;
+        }
+        for (JsonNode statement : root.path("statements")) {
+            Map<String, String> dependencies = new LinkedHashMap<>();
+            statement.path("dependencies").fields().forEachRemaining(field ->
+                    dependencies.put(field.getKey(), field.getValue().asText()));
+            List<List<String>> tables = new ArrayList<>();
+            for (JsonNode table : statement.path("tables")) {
+                List<String> names = new ArrayList<>();
+                table.forEach(name -> names.add(name.asText()));
+                tables.add(names);
+            }
+            Map<Normalization, Integer> normalizations = new EnumMap<>(Normalization.class);
+            statement.path("normalizations").fields().forEachRemaining(field ->
+                    normalizations.put(Normalization.of(field.getKey()), field.getValue().asInt()));
+            JsonNode help = statement.path("help");
+            Future<String> explained = help.isTextual() ? CompletableFuture.completedFuture(help.asText()) : null;
+            cache.add(new Entry(statement.path("fingerprint").asText(), statement.path("schema").asText(), dependencies,
+                    tables, (ObjectNode) statement.get("query"), explained, normalizations));
+        }
+        return cache;
+    }
+
+    /**
+     * @param options The given options.
+     * @return The options that affect the translation of a query, as text.
+     */
+    private static String signature(TranslationOptions options) {
+        return "help=" + options.includes(TranslationOptions.Section.HELP)
+                + ";normalizations=" + options.getNormalizations()
+                + ";columnar=" + options.isColumnarValues();
+    }
+
+    /**
+     * Hash the current definitions of some dependencies.
+     *
+     * @param schema       The schema at the position of the query.
+     * @param dependencies The given dependencies.
+     * @return The hash of the definition of every dependency.
+     */
+    static Map<String, String> versions(CosetteSchema schema, Collection<String> dependencies) {
+        Map<String, String> versions = new TreeMap<>();
+        for (String dependency : dependencies) {
+            String name = dependency.substring(dependency.indexOf(':') + 1);
+            versions.put(dependency, dependency.startsWith("function:") ? schema.functionVersion(name)
+                    : schema.tableVersion(name));
+        }
+        return versions;
+    }
+
+    /**
+     * Write the cache to a file.
+     *
+     * @param file The given file.
+     */
+    public void write(File file) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("format", FORMAT);
+        root.put("options", signature);
+        ArrayNode statements = root.putArray("statements");
+        for (List<Entry> candidates : entries.values()) {
+            for (Entry entry : candidates) {
+                ObjectNode statement = statements.addObject();
+                statement.put("fingerprint", entry.fingerprint);
+                statement.put("schema", entry.schemaVersion);
+                ObjectNode dependencies = statement.putObject("dependencies");
+                entry.dependencies.forEach(dependencies::put);
+                ArrayNode tables = statement.putArray("tables");
+                for (List<String> table : entry.tables) {
+                    ArrayNode names = tables.addArray();
+                    table.forEach(names::add);
+                }
+                statement.set("query", entry.query);
+                if (entry.help != null) {
+                    statement.put("help", SQLJSONParser.explanation(entry.help));
+                }
+                ObjectNode normalizations = statement.putObject("normalizations");
+                entry.normalizations.forEach((normalization, count) -> normalizations.put(normalization.getName(), count));
+            }
+        }
+        mapper.writeValue(file, root);
+    }
+
+    /**
+     * Compute the version of the schema after a DDL statement.
+     *
+     * @param previous  The version of the schema before the statement, or an empty string at the start of a file.
+     * @param statement The fingerprint of the statement.
+     * @return The version of the schema after the statement.
+     */
+    static String nextVersion(String previous, String statement) {
+        return hash(previous + ":" + statement);
+    }
+
+    /**
+     * Hash a statement or a definition, so that the cache can tell whether it changed between two runs.
+     *
+     * @param text The given text.
+     * @return The SHA-256 hash of the text, in hexadecimal.
+     */
+    static String hash(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Find a translation of a query that can be reused at the given position. The definitions the query depends on
+     * are only hashed again if no entry was translated with the same schema version.
+     *
+     * @param fingerprint   The fingerprint of the query.
+     * @param schemaVersion The version of the schema at the position of the query.
+     * @param schema        The schema at the position of the query.
+     * @return The reusable entry, recorded with the given schema version, or null if the query has to be translated.
+     */
+    Entry find(String fingerprint, String schemaVersion, CosetteSchema schema) {
+        List<Entry> candidates = entries.getOrDefault(fingerprint, List.of());
+        for (Entry entry : candidates) {
+            if (entry.schemaVersion.equals(schemaVersion)) {
+                hits += 1;
+                return entry;
+            }
+        }
+        for (Entry entry : candidates) {
+            if (versions(schema, entry.dependencies.keySet()).equals(entry.dependencies)) {
+                hits += 1;
+                return new Entry(entry.fingerprint, schemaVersion, entry.dependencies, entry.tables, entry.query,
+                        entry.help, entry.normalizations);
+            }
+        }
+        misses += 1;
+        return null;
+    }
+
+    /**
+     * Add the translation of a query. An entry with the same fingerprint and the same dependencies is replaced.
+     *
+     * @param entry The given entry.
+     */
+    void add(Entry entry) {
+        List<Entry> candidates = entries.computeIfAbsent(entry.fingerprint, key -> new ArrayList<>());
+        candidates.removeIf(candidate -> candidate.dependencies.equals(entry.dependencies));
+        candidates.add(entry);
+    }
+
+    /**
+     * @return The number of queries whose translation was reused.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of queries that had to be translated.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * The translation of a single query, with the tables it scans numbered in the order it first scans them.
+     */
+    static final class Entry {
+
+        final String fingerprint;
+        final String schemaVersion;
+        final Map<String, String> dependencies;
+        final List<List<String>> tables;
+        final ObjectNode query;
+        final Future<String> help;
+        final Map<Normalization, Integer> normalizations;
+
+        /**
+         * @param statement  The fingerprint of the query.
+         * @param version    The version of the schema at the position of the query.
+         * @param versions   The hash of the definition of every dependency when the query was translated.
+         * @param scanned    The qualified names of the tables scanned by the query.
+         * @param translated The translated query, with local table indices.
+         * @param explained  The pending help entry, or null if the help section is not included.
+         * @param fired      The number of times each normalization fired on the query.
+         */
+        Entry(String statement, String version, Map<String, String> versions, List<List<String>> scanned,
+              ObjectNode translated, Future<String> explained, Map<Normalization, Integer> fired) {
+            fingerprint = statement;
+            schemaVersion = version;
+            dependencies = new TreeMap<>(versions);
+            tables = scanned;
+            query = translated;
+            help = explained;
+            normalizations = fired;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.cosette;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A TranslationOptions instance holds the settings of a translation. Instances are immutable, and every setter returns
+ * a modified copy.
+ */
+public final class TranslationOptions {
+
+    /**
+     * The default settings, which translate every statement without a time budget, abort a file at its first failing
+     * statement and output the schemas, queries and help sections.
+     */
+    public static final TranslationOptions DEFAULT = new TranslationOptions(0, false,
+            EnumSet.of(Section.SCHEMAS, Section.QUERIES, Section.HELP), EnumSet.noneOf(Normalization.class), false);
+
+    private final long statementTimeout;
+    private final boolean keepGoing;
+    private final Set<Section> sections;
+    private final Set<Normalization> normalizations;
+    private final boolean columnarValues;
+
+    private TranslationOptions(long timeout, boolean tolerant, Set<Section> selected, Set<Normalization> rewrites,
+                               boolean columnar) {
+        statementTimeout = timeout;
+        keepGoing = tolerant;
+        sections = Collections.unmodifiableSet(selected);
+        normalizations = Collections.unmodifiableSet(rewrites);
+        columnarValues = columnar;
+    }
+
+    /**
+     * @return The time budget of a single statement in milliseconds, or 0 for no budget.
+     */
+    public long getStatementTimeout() {
+        return statementTimeout;
+    }
+
+    /**
+     * Set the time budget of a single statement. Statements exceeding it are abandoned and reported as timed out.
+     *
+     * @param millis The given budget in milliseconds, or 0 for no budget.
+     * @return The modified copy.
+     */
+    public TranslationOptions withStatementTimeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Statement timeout must not be negative.");
+        }
+        return new TranslationOptions(millis, keepGoing, sections, normalizations, columnarValues);
+    }
+
+    /**
+     * @return Whether a failing statement is recorded as an error instead of aborting the whole file.
+     */
+    public boolean isKeepGoing() {
+        return keepGoing;
+    }
+
+    /**
+     * Set whether a failing statement is recorded as an error and the translation continues with the next statement.
+     *
+     * @param tolerant Whether to keep going after a failing statement.
+     * @return The modified copy.
+     */
+    public TranslationOptions withKeepGoing(boolean tolerant) {
+        return new TranslationOptions(statementTimeout, tolerant, sections, normalizations, columnarValues);
+    }
+
+    /**
+     * @return The sections included in the output.
+     */
+    public Set<Section> getSections() {
+        return sections;
+    }
+
+    /**
+     * @param section The given section.
+     * @return Whether the given section is included in the output.
+     */
+    public boolean includes(Section section) {
+        return sections.contains(section);
+    }
+
+    /**
+     * Select the sections included in the output. The errors section is always included when there are errors.
+     *
+     * @param selected The given sections.
+     * @return The modified copy.
+     */
+    public TranslationOptions withSections(Set<Section> selected) {
+        EnumSet<Section> copy = EnumSet.noneOf(Section.class);
+        copy.addAll(selected);
+        return new TranslationOptions(statementTimeout, keepGoing, copy, normalizations, columnarValues);
+    }
+
+    /**
+     * @return The normalizations applied to every plan before it is translated.
+     */
+    public Set<Normalization> getNormalizations() {
+        return normalizations;
+    }
+
+    /**
+     * Select the normalizations applied to every plan before it is translated. None is applied by default.
+     *
+     * @param selected The given normalizations.
+     * @return The modified copy.
+     */
+    public TranslationOptions withNormalizations(Set<Normalization> selected) {
+        EnumSet<Normalization> copy = EnumSet.noneOf(Normalization.class);
+        copy.addAll(selected);
+        return new TranslationOptions(statementTimeout, keepGoing, sections, copy, columnarValues);
+    }
+
+    /**
+     * @return Whether the tuples of a LogicalValues node are output column by column.
+     */
+    public boolean isColumnarValues() {
+        return columnarValues;
+    }
+
+    /**
+     * Set whether the tuples of a LogicalValues node, including those of a large IN-list, are output as one array of
+     * values per column instead of one array of literal nodes per row.
+     *
+     * @param columnar Whether to output the values column by column.
+     * @return The modified copy.
+     */
+    public TranslationOptions withColumnarValues(boolean columnar) {
+        return new TranslationOptions(statementTimeout, keepGoing, sections, normalizations, columnar);
+    }
+
+    /**
+     * @return A new deadline for a single statement.
+     */
+    Deadline newDeadline() {
+        return Deadline.after(statementTimeout);
+    }
+
+    /**
+     * The selectable sections of the output.
+     */
+    public enum Section {
+        SCHEMAS,
+        QUERIES,
+        HELP,
+        FINGERPRINTS,
+        EQUIVALENT;
+
+        /**
+         * Find a section by its name in the output.
+         *
+         * @param name The given name.
+         * @return The corresponding section.
+         */
+        public static Section of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+}
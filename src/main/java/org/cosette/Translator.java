@@ -0,0 +1,162 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.calcite.rel.type.RelDataType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A Translator instance translates scripts to JSON format without any file I/O. It only reads sealed schemas, so it can
+ * be shared by many threads. DDL statements in a script only affect the translation of that script. Failing statements
+ * are reported in the errors section of the translation.
+ */
+public class Translator {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final int TEMPLATE_LIMIT = 1024;
+
+    private final Supplier<CosetteSchema> schemas;
+    private final TranslationOptions options;
+    private final Map<String, QueryTemplate> templates = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryTemplate> eldest) {
+            return size() > TEMPLATE_LIMIT;
+        }
+    };
+
+    /**
+     * Create a translator with the current schema of the given SchemaGenerator instance. Later changes to the
+     * SchemaGenerator instance are not seen by the translator.
+     *
+     * @param generator The given SchemaGenerator instance.
+     */
+    public Translator(SchemaGenerator generator) {
+        this(generator.schema());
+    }
+
+    /**
+     * Create a translator with the given schema. A schema that is not sealed yet is copied first, so later changes to
+     * it are not seen by the translator.
+     *
+     * @param schema The given schema.
+     */
+    public Translator(CosetteSchema schema) {
+        CosetteSchema sealed = schema.isMutable() ? schema.copy() : schema;
+        sealed.seal();
+        schemas = () -> sealed;
+        options = TranslationOptions.DEFAULT;
+    }
+
+    /**
+     * Create a translator that uses the current version of the schema in the given registry. Each script is
+     * translated with the version that is current when its translation starts.
+     *
+     * @param registry The given registry.
+     */
+    public Translator(SchemaRegistry registry) {
+        schemas = registry::current;
+        options = TranslationOptions.DEFAULT;
+    }
+
+    private Translator(Supplier<CosetteSchema> source, TranslationOptions settings) {
+        schemas = source;
+        options = settings;
+    }
+
+    /**
+     * Create a translator that reads the same schemas with the given options.
+     *
+     * @param settings The given options.
+     * @return The created translator.
+     */
+    public Translator withOptions(TranslationOptions settings) {
+        return new Translator(schemas, settings);
+    }
+
+    /**
+     * Translate a script.
+     *
+     * @param script The given script.
+     * @return The translation, including the errors of the failed statements.
+     */
+    public Translation translate(String script) {
+        return translate(new SQLScript(script));
+    }
+
+    /**
+     * Read and translate a script.
+     *
+     * @param script The given reader.
+     * @return The translation, including the errors of the failed statements.
+     */
+    public Translation translate(Reader script) throws IOException {
+        return translate(SQLScript.read(script));
+    }
+
+    /**
+     * Translate a script that has been split into statements. A failing statement is recorded as an error and the
+     * translation continues with the next statement.
+     *
+     * @param script The given script.
+     * @return The translation, including the errors of the failed statements.
+     */
+    public Translation translate(SQLScript script) {
+        boolean definesSchema = false;
+        for (SQLScript.Statement statement : script) {
+            definesSchema |= statement.getKind() != SQLScript.Statement.Kind.QUERY;
+        }
+        CosetteSchema schema = schemas.get();
+        SchemaGenerator generator = new SchemaGenerator(definesSchema ? schema.copy() : schema);
+        SQLJSONParser parser = new SQLJSONParser(options);
+        for (SQLScript.Statement statement : script) {
+            try {
+                parser.parseStatement(generator, statement);
+            } catch (Deadline.StatementTimeoutException e) {
+                parser.recordError(new StatementError(statement, e.getMessage(), StatementError.Kind.TIMEOUT));
+            } catch (Exception | AssertionError e) {
+                parser.recordError(new StatementError(statement, String.valueOf(e.getMessage())));
+            }
+        }
+        return new Translation(mapper, parser.toJSON(mapper), parser.getErrors());
+    }
+
+    /**
+     * Translate a query with dynamic parameters into a template, whose parameters can be bound later without going
+     * through the planner again. Templates are cached by query text, and a cached template is only reused while the
+     * schema it was translated with is still current. The fingerprints and equivalent sections are not available for
+     * templates, and the help section shows the parameters unbound.
+     *
+     * @param query The given query.
+     * @return The template of the query.
+     */
+    public QueryTemplate prepare(String query) throws Exception {
+        CosetteSchema schema = schemas.get();
+        synchronized (templates) {
+            QueryTemplate cached = templates.get(query);
+            if (cached != null && cached.getSchema() == schema) {
+                return cached;
+            }
+        }
+        Set<TranslationOptions.Section> sections = EnumSet.noneOf(TranslationOptions.Section.class);
+        sections.addAll(options.getSections());
+        sections.remove(TranslationOptions.Section.FINGERPRINTS);
+        sections.remove(TranslationOptions.Section.EQUIVALENT);
+        SQLJSONParser parser = new SQLJSONParser(options.withSections(sections));
+        List<RelDataType> parameters = parser.parseParameterizedDML(new SchemaGenerator(schema).extractSchema(), query,
+                options.newDeadline());
+        QueryTemplate template = new QueryTemplate(mapper, parser.toJSON(mapper), parameters, schema);
+        synchronized (templates) {
+            templates.put(query, template);
+        }
+        return template;
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.cosette;
+
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CosetteTableTest {
+
+    private static RelDataType rowType(SchemaGenerator generator, String name) throws Exception {
+        RawPlanner planner = new RawPlanner(generator.extractSchema());
+        planner.parse("SELECT * FROM " + name);
+        Table table = generator.schema().getTable(name);
+        return table.getRowType(planner.getTypeFactory());
+    }
+
+    @Test
+    void statementsShareTheTypeFactory() throws Exception {
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyCreateTable("CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10))");
+        RawPlanner first = new RawPlanner(generator.extractSchema());
+        first.parse("SELECT * FROM EMP");
+        RawPlanner second = new RawPlanner(generator.extractSchema());
+        second.parse("SELECT ENAME FROM EMP");
+        assertSame(first.getTypeFactory(), second.getTypeFactory());
+        assertSame(rowType(generator, "EMP"), rowType(generator, "EMP"));
+    }
+
+    @Test
+    void rowTypeFollowsColumnChanges() throws Exception {
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyCreateTable("CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10))");
+        CosetteTable table = (CosetteTable) generator.schema().getTable("EMP");
+        RelDataType before = rowType(generator, "EMP");
+        table.setNullable(0, false);
+        RelDataType after = rowType(generator, "EMP");
+        assertTrue(before.getFieldList().get(0).getType().isNullable());
+        assertFalse(after.getFieldList().get(0).getType().isNullable());
+        table.addColumn("SAL", SqlTypeName.DOUBLE, true);
+        assertEquals(3, rowType(generator, "EMP").getFieldCount());
+    }
+
+    @Test
+    void wideTablesResolveKeysByName() throws Exception {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE WIDE (");
+        for (int column = 0; column < 2000; column += 1) {
+            ddl.append("C").append(column).append(" INTEGER, ");
+        }
+        ddl.append("PRIMARY KEY (C1999), UNIQUE (C0, C1000))");
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyCreateTable(ddl.toString());
+        CosetteTable table = (CosetteTable) generator.schema().getTable("WIDE");
+        assertEquals(2000, table.columnCount());
+        assertEquals(1999, table.columnOrdinal("C1999"));
+        assertFalse(table.isNullable(1999));
+        assertEquals(2, table.columnKeys.size());
+        assertEquals(2000, rowType(generator, "WIDE").getFieldCount());
+    }
+
+}
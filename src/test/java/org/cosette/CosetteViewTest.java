@@ -0,0 +1,90 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CosetteViewTest {
+
+    @TempDir
+    File directory;
+
+    private static SchemaGenerator generate(String script) {
+        SchemaGenerator generator = new SchemaGenerator();
+        assertEquals(List.of(), generator.applyScript(new SQLScript(script)));
+        return generator;
+    }
+
+    private static String translate(SchemaGenerator generator, String queries) {
+        Translation translation = new Translator(generator).translate(queries);
+        assertEquals(0, translation.getErrors().size(), () -> translation.getErrors().toString());
+        return translation.getJSON().get("queries").toString();
+    }
+
+    @Test
+    void viewsFollowTheTablesTheyReferTo() {
+        SchemaGenerator generator = generate("CREATE TABLE T (A INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT A FROM T;\n"
+                + "CREATE TABLE T (A VARCHAR(5), X INTEGER, B INTEGER);\n");
+        SchemaGenerator expected = generate("CREATE TABLE T (A VARCHAR(5), X INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT A FROM T;\n");
+        assertEquals(translate(expected, "SELECT * FROM VA;"), translate(generator, "SELECT * FROM VA;"));
+    }
+
+    @Test
+    void viewsFollowTheViewsTheyReferTo() {
+        SchemaGenerator generator = generate("CREATE TABLE T (A INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT A FROM T;\n"
+                + "CREATE VIEW VB AS SELECT A FROM VA WHERE A > 0;\n"
+                + "CREATE OR REPLACE VIEW VA AS SELECT B AS A FROM T;\n");
+        SchemaGenerator expected = generate("CREATE TABLE T (A INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT B AS A FROM T;\n"
+                + "CREATE VIEW VB AS SELECT A FROM VA WHERE A > 0;\n");
+        assertEquals(translate(expected, "SELECT * FROM VB;"), translate(generator, "SELECT * FROM VB;"));
+        List<CosetteView> views = generator.schema().views;
+        assertEquals(List.of("VA", "VB"), List.of(views.get(0).id.toString(), views.get(1).id.toString()));
+    }
+
+    @Test
+    void changesBreakingViewsAreRejected() throws Exception {
+        SchemaGenerator generator = generate("CREATE TABLE T (A INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT A FROM T;\n"
+                + "CREATE VIEW VB AS SELECT B FROM T;\n"
+                + "CREATE VIEW VC AS SELECT A FROM VA;\n");
+        String before = translate(generator, "SELECT * FROM VA;");
+        Exception error = assertThrows(Exception.class, () -> generator.applyCreateTable("CREATE TABLE T (A INTEGER)"));
+        assertTrue(error.getMessage().contains("VB"), error.getMessage());
+        assertEquals(2, ((CosetteTable) generator.schema().getTable("T")).columnCount());
+        assertEquals(before, translate(generator, "SELECT * FROM VA;"));
+        error = assertThrows(Exception.class,
+                () -> generator.applyCreateView("CREATE OR REPLACE VIEW VA AS SELECT B FROM T"));
+        assertTrue(error.getMessage().contains("VC"), error.getMessage());
+        assertEquals(before, translate(generator, "SELECT * FROM VA;"));
+        assertEquals(3, generator.schema().views.size());
+    }
+
+    @Test
+    void viewsCannotReferToThemselves() {
+        SchemaGenerator generator = generate("CREATE TABLE T (A INTEGER);\nCREATE VIEW V AS SELECT A FROM T;\n");
+        assertThrows(Exception.class, () -> generator.applyCreateView("CREATE OR REPLACE VIEW V AS SELECT A FROM V"));
+    }
+
+    @Test
+    void replacedViewsAreRestoredInDependencyOrder() throws Exception {
+        SchemaGenerator original = generate("CREATE TABLE T (A INTEGER, B INTEGER);\n"
+                + "CREATE VIEW VA AS SELECT A FROM T;\n"
+                + "CREATE VIEW VB AS SELECT A FROM VA;\n"
+                + "CREATE OR REPLACE VIEW VA AS SELECT A, B FROM T;\n"
+                + "CREATE TABLE T (A INTEGER, B INTEGER, C INTEGER);\n");
+        File snapshot = new File(directory, "views.snapshot");
+        original.saveSnapshot(snapshot);
+        SchemaGenerator restored = SchemaGenerator.loadSnapshot(snapshot);
+        String queries = "SELECT * FROM VA;\nSELECT * FROM VB;\n";
+        assertEquals(translate(original, queries), translate(restored, queries));
+    }
+
+}
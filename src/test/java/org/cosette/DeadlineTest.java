@@ -0,0 +1,102 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.calcite.rel.RelNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineTest {
+
+    private static final String DDL = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO INTEGER)";
+
+    @TempDir
+    File directory;
+
+    private static RelNode plan(String query) throws Exception {
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyCreateTable(DDL);
+        RawPlanner planner = new RawPlanner(generator.extractSchema());
+        return planner.rel(planner.parse(query)).project();
+    }
+
+    private static Deadline cancelled() {
+        Deadline deadline = Deadline.after(0);
+        deadline.cancel();
+        return deadline;
+    }
+
+    @Test
+    void budgetExpiresAndZeroMeansNoBudget() throws InterruptedException {
+        Deadline deadline = Deadline.after(1);
+        Thread.sleep(5);
+        assertTrue(deadline.isExpired());
+        assertThrows(Deadline.StatementTimeoutException.class, deadline::check);
+        assertFalse(Deadline.after(0).isExpired());
+        assertThrows(IllegalArgumentException.class, () -> Deadline.after(-1));
+    }
+
+    @Test
+    void cancelledDeadlineStopsValidation() throws Exception {
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyCreateTable(DDL);
+        RawPlanner planner = new RawPlanner(generator.extractSchema(), cancelled());
+        assertThrows(Deadline.StatementTimeoutException.class, () -> planner.rel(planner.parse("SELECT * FROM EMP")));
+    }
+
+    @Test
+    void cancelledDeadlineStopsTranslation() throws Exception {
+        RelNode plan = plan("SELECT ENAME FROM EMP WHERE DEPTNO = 10");
+        Environment environment = new Environment(new ObjectMapper(), new ArrayList<>(), false, cancelled());
+        assertThrows(Deadline.StatementTimeoutException.class, () -> RelJSONShuttle.translate(plan, environment));
+    }
+
+    @Test
+    void cancelledDeadlineStopsNormalization() throws Exception {
+        RelNode plan = plan("SELECT ENAME FROM (SELECT * FROM EMP WHERE DEPTNO = 10) WHERE EMPNO = 1");
+        PlanNormalizer normalizer = new PlanNormalizer(EnumSet.allOf(Normalization.class));
+        assertThrows(Deadline.StatementTimeoutException.class, () -> normalizer.normalize(plan, cancelled()));
+        assertNotNull(normalizer.normalize(plan));
+    }
+
+    @Test
+    void invalidTimeoutsAreReported() {
+        PrintStream standard = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try {
+            Main.main(new String[]{"--timeout=abc"});
+            Main.main(new String[]{"--timeout=-5"});
+        } finally {
+            System.setErr(standard);
+        }
+        assertEquals(2, captured.toString().split("Invalid option:", -1).length - 1);
+    }
+
+    @Test
+    void largeFilesAreAssembledOutsideTheBudget() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int table = 0; table < 500; table += 1) {
+            script.append("CREATE TABLE T").append(table).append(" (A INTEGER, B INTEGER, CHECK (A > B));\n");
+            script.append("SELECT A FROM T").append(table).append(";\n");
+        }
+        File input = new File(directory, "large.sql");
+        Files.writeString(input.toPath(), script.toString());
+        Main.main(new String[]{"--timeout=50", input.getPath()});
+        JsonNode json = new ObjectMapper().readTree(new File(directory, "large.json"));
+        int timedOut = json.has("errors") ? json.get("errors").size() : 0;
+        assertEquals(500, json.get("queries").size() + timedOut);
+        assertEquals(json.get("queries").size(), json.get("schemas").size());
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EquivalentTest {
+
+    private static final String EMP = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO INTEGER);\n";
+
+    private static JsonNode equivalent(String script) {
+        TranslationOptions options = TranslationOptions.DEFAULT.withSections(EnumSet.of(
+                TranslationOptions.Section.EQUIVALENT));
+        Translation translation = new Translator(new SchemaRegistry()).withOptions(options).translate(script);
+        assertEquals(0, translation.getErrors().size(), () -> translation.getErrors().toString());
+        assertNull(translation.getJSON().get("fingerprints"));
+        return translation.getJSON().get("equivalent");
+    }
+
+    @Test
+    void identicalPlansFormClasses() {
+        JsonNode classes = equivalent(EMP + "SELECT ENAME FROM EMP;\n"
+                + "SELECT EMPNO FROM EMP;\n"
+                + "select e.ename from emp e;\n"
+                + "SELECT (EMPNO) FROM EMP AS X;\n"
+                + "SELECT DEPTNO FROM EMP;\n"
+                + "SELECT ENAME FROM (SELECT * FROM EMP);\n");
+        assertEquals(2, classes.size());
+        assertEquals("[0,2]", classes.get(0).toString());
+        assertEquals("[1,3]", classes.get(1).toString());
+    }
+
+    @Test
+    void distinctPlansAreNotListed() {
+        JsonNode classes = equivalent(EMP + "SELECT ENAME FROM EMP;\nSELECT ENAME FROM EMP WHERE DEPTNO = 1;\n");
+        assertEquals(0, classes.size());
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintTest {
+
+    private static final String EMP = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO INTEGER);\n";
+    private static final String DEPT = "CREATE TABLE DEPT (DEPTNO INTEGER, DNAME VARCHAR(10));\n";
+
+    private static JsonNode fingerprints(String script) {
+        TranslationOptions options = TranslationOptions.DEFAULT.withSections(EnumSet.of(
+                TranslationOptions.Section.QUERIES, TranslationOptions.Section.FINGERPRINTS));
+        Translation translation = new Translator(new SchemaRegistry()).withOptions(options).translate(script);
+        assertEquals(0, translation.getErrors().size(), () -> translation.getErrors().toString());
+        assertNull(translation.getJSON().get("schemas"));
+        return translation.getJSON().get("fingerprints");
+    }
+
+    @Test
+    void sectionsFollowTheSchemasAndQueries() {
+        JsonNode fingerprints = fingerprints(EMP + DEPT + "SELECT * FROM EMP;\nSELECT * FROM DEPT;\n");
+        assertEquals(2, fingerprints.get("schemas").size());
+        assertEquals(2, fingerprints.get("queries").size());
+        for (JsonNode fingerprint : fingerprints.get("queries")) {
+            assertTrue(fingerprint.asText().matches("[0-9a-f]{16}"));
+        }
+        assertNotEquals(fingerprints.get("schemas").get(0), fingerprints.get("schemas").get(1));
+    }
+
+    @Test
+    void aliasesAndCaseDoNotMatter() {
+        JsonNode queries = fingerprints(EMP + "SELECT ENAME FROM EMP WHERE DEPTNO = 10;\n"
+                + "select e.ename from emp as e where (e.deptno = 10);\n").get("queries");
+        assertEquals(queries.get(0), queries.get(1));
+    }
+
+    @Test
+    void queriesAreIndependentOfTableOrder() {
+        String query = "SELECT DNAME FROM DEPT;\n";
+        JsonNode alone = fingerprints(DEPT + query).get("queries");
+        JsonNode after = fingerprints(EMP + DEPT + "SELECT * FROM EMP;\n" + query).get("queries");
+        assertEquals(alone.get(0), after.get(1));
+    }
+
+    @Test
+    void tableDefinitionsChangeTheFingerprint() {
+        String query = "SELECT * FROM EMP;\n";
+        JsonNode before = fingerprints(EMP + query);
+        JsonNode after = fingerprints("CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO BIGINT);\n"
+                + query);
+        assertNotEquals(before.get("schemas").get(0), after.get("schemas").get(0));
+        assertNotEquals(before.get("queries").get(0), after.get("queries").get(0));
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatPlanTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void numbersRoundTripExactly() throws IOException {
+        ObjectNode tree = JsonNodeFactory.withExactBigDecimals(true).objectNode();
+        tree.put("int", 7);
+        tree.put("long", Long.MAX_VALUE);
+        tree.put("double", 0.1);
+        tree.put("float", 0.1f);
+        tree.put("decimal", new BigDecimal("0.10000000000000000000000000001"));
+        tree.put("scaled", new BigDecimal("1.50"));
+        tree.put("big", new BigInteger("123456789012345678901234567890"));
+        File file = new File(directory, "numbers.flat");
+        FlatPlan.of(tree).write(file);
+        FlatPlan plan = FlatPlan.read(file);
+        assertEquals(FlatPlan.DECIMAL, plan.tag(plan.field(0, "decimal")));
+        assertEquals(new BigDecimal("1.50"), plan.decimalValue(plan.field(0, "scaled")));
+        assertEquals(FlatPlan.FLOAT, plan.tag(plan.field(0, "float")));
+        assertEquals(tree.toString(), plan.toJSON().toString());
+    }
+
+    @Test
+    void translationsRoundTrip() throws IOException {
+        SchemaGenerator generator = new SchemaGenerator();
+        generator.applyScript(new SQLScript("CREATE TABLE EMP (EMPNO INTEGER, SAL DECIMAL(10, 2), CHECK (SAL > 0));"));
+        JsonNode json = new Translator(generator).translate("SELECT EMPNO, SAL * 1.5 FROM EMP WHERE SAL > 100.25;")
+                .getJSON();
+        File file = new File(directory, "query.flat");
+        FlatPlan.of(json).write(file);
+        FlatPlan plan = FlatPlan.read(file);
+        assertEquals(json, plan.toJSON());
+        int queries = plan.field(0, "queries");
+        assertEquals(FlatPlan.ARRAY, plan.tag(queries));
+        assertEquals(1, plan.count(queries));
+    }
+
+}
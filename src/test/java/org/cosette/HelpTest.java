@@ -0,0 +1,31 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HelpTest {
+
+    @Test
+    void helpEntriesFollowTheQueries() {
+        StringBuilder script = new StringBuilder();
+        for (int table = 0; table < 64; table += 1) {
+            script.append("CREATE TABLE T").append(table).append(" (X INTEGER);\n");
+            script.append("SELECT X FROM T").append(table).append(";\n");
+        }
+        TranslationOptions options = TranslationOptions.DEFAULT.withSections(EnumSet.of(
+                TranslationOptions.Section.QUERIES, TranslationOptions.Section.HELP));
+        Translation translation = new Translator(new SchemaRegistry()).withOptions(options)
+                .translate(script.toString());
+        assertEquals(0, translation.getErrors().size());
+        JsonNode help = translation.getJSON().get("help");
+        assertEquals(64, help.size());
+        for (int table = 0; table < 64; table += 1) {
+            assertTrue(help.get(table).asText().contains(", T" + table + "]]"), help.get(table).asText());
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeepGoingTest {
+
+    private static final String SCRIPT = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10));\n"
+            + "SELECT MISSING FROM EMP;\n"
+            + "CREATE TABLE DEPT (DEPTNO INTEGER, CHECK (DNAME > 0));\n"
+            + "SELECT ENAME FROM EMP;\n"
+            + "SELECT * FROM DEPT;\n";
+
+    @TempDir
+    File directory;
+
+    private File write(String script) throws IOException {
+        File input = new File(directory, "script.sql");
+        Files.writeString(input.toPath(), script);
+        return input;
+    }
+
+    @Test
+    void failingStatementsAreRecorded() throws IOException {
+        File input = write(SCRIPT);
+        Main.parseFile(input.getPath(), TranslationOptions.DEFAULT.withKeepGoing(true));
+        JsonNode json = new ObjectMapper().readTree(new File(directory, "script.json"));
+        assertEquals(1, json.get("queries").size());
+        JsonNode errors = json.get("errors");
+        assertEquals(2, errors.size());
+        int[] indices = {1, 4};
+        String[] statements = {"SELECT MISSING", "SELECT * FROM DEPT"};
+        for (int error = 0; error < indices.length; error += 1) {
+            JsonNode record = errors.get(error);
+            assertEquals(indices[error], record.get("index").asInt());
+            assertEquals(SCRIPT.indexOf(statements[error]), record.get("offset").asInt());
+            assertEquals("failed", record.get("kind").asText());
+            assertFalse(record.get("message").asText().isEmpty());
+        }
+        assertTrue(errors.get(1).get("message").asText().startsWith("Invalid check constraint"));
+    }
+
+    @Test
+    void failingStatementsAbortWithoutTheOption() throws IOException {
+        File input = write(SCRIPT);
+        Main.parseFile(input.getPath(), TranslationOptions.DEFAULT);
+        assertFalse(new File(directory, "script.json").exists());
+    }
+
+    @Test
+    void cleanScriptsHaveNoErrorsSection() throws IOException {
+        File input = write("CREATE TABLE EMP (EMPNO INTEGER);\nSELECT * FROM EMP;\n");
+        Main.parseFile(input.getPath(), TranslationOptions.DEFAULT.withKeepGoing(true));
+        JsonNode json = new ObjectMapper().readTree(new File(directory, "script.json"));
+        assertNull(json.get("errors"));
+    }
+
+}
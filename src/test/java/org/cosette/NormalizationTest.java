@@ -0,0 +1,71 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NormalizationTest {
+
+    private static final String EMP = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO INTEGER);\n";
+
+    private static JsonNode translate(Set<Normalization> normalizations, String script) {
+        TranslationOptions options = TranslationOptions.DEFAULT.withNormalizations(normalizations);
+        Translation translation = new Translator(new SchemaRegistry()).withOptions(options).translate(script);
+        assertEquals(0, translation.getErrors().size(), () -> translation.getErrors().toString());
+        return translation.getJSON();
+    }
+
+    @Test
+    void outputUsesTheCommandLineNames() {
+        JsonNode json = translate(EnumSet.allOf(Normalization.class), EMP + "SELECT * FROM EMP;\n");
+        for (Normalization normalization : Normalization.values()) {
+            assertSame(normalization, Normalization.of(normalization.getName()));
+            assertTrue(json.get("normalizations").has(normalization.getName()), normalization.getName());
+        }
+        assertEquals(Normalization.PROJECT_MERGE, Normalization.of(" project-merge"));
+    }
+
+    @Test
+    void nestedFiltersAreMergedAndCounted() {
+        String script = EMP + "SELECT * FROM (SELECT * FROM EMP WHERE DEPTNO = 10) WHERE EMPNO = 1;\n"
+                + "SELECT * FROM EMP WHERE DEPTNO = 10 AND EMPNO = 1;\n";
+        JsonNode plain = translate(EnumSet.noneOf(Normalization.class), script);
+        assertNull(plain.get("normalizations"));
+        assertNotEquals(plain.get("queries").get(0), plain.get("queries").get(1));
+        JsonNode normalized = translate(EnumSet.of(Normalization.FILTER_MERGE, Normalization.PROJECT_REMOVE), script);
+        assertEquals(1, normalized.get("normalizations").get("filter-merge").asInt());
+        assertFalse(normalized.get("normalizations").has("project-merge"));
+        assertEquals(normalized.get("queries").get(0), normalized.get("queries").get(1));
+    }
+
+    @Test
+    void correlatedFiltersAreLeftAlone() {
+        String query = "SELECT * FROM EMP E WHERE EXISTS (SELECT * FROM EMP F WHERE F.DEPTNO = E.DEPTNO);\n";
+        JsonNode plain = translate(EnumSet.noneOf(Normalization.class), EMP + query);
+        JsonNode normalized = translate(EnumSet.of(Normalization.FILTER_MERGE), EMP + query);
+        assertEquals(0, normalized.get("normalizations").get("filter-merge").asInt());
+        assertEquals(plain.get("queries"), normalized.get("queries"));
+    }
+
+    @Test
+    void invalidOptionValuesAreReported() {
+        PrintStream standard = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try {
+            Main.main(new String[]{"--normalize=filter-merge,unknown"});
+            Main.main(new String[]{"--sections=queries,unknown"});
+            Main.main(new String[]{"--format=unknown"});
+        } finally {
+            System.setErr(standard);
+        }
+        assertEquals(3, captured.toString().split("Invalid option:", -1).length - 1);
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryTemplateTest {
+
+    private static final String DDL = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), SAL DECIMAL(10, 2));";
+
+    private static SchemaRegistry registry() {
+        SchemaRegistry registry = new SchemaRegistry();
+        assertEquals(List.of(), registry.apply(DDL));
+        return registry;
+    }
+
+    private static void assertSameQueries(Translation expected, Translation actual) {
+        assertEquals(expected.getJSON().get("schemas"), actual.getJSON().get("schemas"));
+        assertEquals(expected.getJSON().get("queries"), actual.getJSON().get("queries"));
+    }
+
+    @Test
+    void boundTemplatesMatchTheWrittenQuery() throws Exception {
+        Translator translator = new Translator(registry());
+        QueryTemplate template = translator.prepare("SELECT ENAME FROM EMP WHERE EMPNO = ? AND SAL > ?");
+        assertEquals(List.of("INTEGER", "DECIMAL"), template.getParameterTypes());
+        assertSameQueries(translator.translate("SELECT ENAME FROM EMP WHERE EMPNO = 7 AND SAL > 1.50;"),
+                template.bind(7, new BigDecimal("1.50")));
+        assertSameQueries(translator.translate("SELECT ENAME FROM EMP WHERE EMPNO = 8 AND SAL > 2.00;"),
+                template.bind(8, new BigDecimal("2.00")));
+    }
+
+    @Test
+    void slotsAreTyped() throws Exception {
+        QueryTemplate template = new Translator(registry()).prepare("SELECT ENAME FROM EMP WHERE ENAME = ?");
+        assertEquals(1, template.getParameterCount());
+        String json = template.getJSON().toString();
+        assertTrue(json.contains("{\"parameter\":0,\"type\":\"VARCHAR\"}"), json);
+    }
+
+    @Test
+    void nullsAndWrongArityAreHandled() throws Exception {
+        QueryTemplate template = new Translator(registry()).prepare("SELECT ENAME FROM EMP WHERE EMPNO = ?");
+        assertNotNull(template.bind((Object) null).getJSON());
+        assertThrows(IllegalArgumentException.class, () -> template.bind(1, 2));
+    }
+
+    @Test
+    void valuesOfTheWrongTypeAreRejected() throws Exception {
+        Translator translator = new Translator(registry());
+        QueryTemplate template = translator.prepare("SELECT ENAME FROM EMP WHERE EMPNO = ? AND ENAME = ?");
+        assertThrows(IllegalArgumentException.class, () -> template.bind("7", "SMITH"));
+        assertThrows(IllegalArgumentException.class, () -> template.bind(7.5, "SMITH"));
+        assertThrows(IllegalArgumentException.class, () -> template.bind(7, LocalDate.of(2020, 1, 1)));
+        assertSameQueries(translator.translate("SELECT ENAME FROM EMP WHERE EMPNO = 7 AND ENAME = 'SMITH';"),
+                template.bind(7L, "SMITH"));
+    }
+
+    @Test
+    void datesAreBoundFromJavaTime() throws Exception {
+        SchemaRegistry registry = new SchemaRegistry();
+        assertEquals(List.of(), registry.apply("CREATE TABLE EVENT (ID INTEGER, HELD DATE);"));
+        Translator translator = new Translator(registry);
+        QueryTemplate template = translator.prepare("SELECT ID FROM EVENT WHERE HELD = ?");
+        assertEquals(List.of("DATE"), template.getParameterTypes());
+        assertSameQueries(translator.translate("SELECT ID FROM EVENT WHERE HELD = DATE '2020-01-31';"),
+                template.bind(LocalDate.of(2020, 1, 31)));
+        assertThrows(IllegalArgumentException.class, () -> template.bind("2020-01-31"));
+    }
+
+    @Test
+    void templatesAreCachedPerSchemaVersion() throws Exception {
+        SchemaRegistry registry = registry();
+        Translator translator = new Translator(registry);
+        String query = "SELECT ENAME FROM EMP WHERE EMPNO = ?";
+        QueryTemplate template = translator.prepare(query);
+        assertSame(template, translator.prepare(query));
+        registry.apply("CREATE TABLE DEPT (DEPTNO INTEGER);");
+        assertNotSame(template, translator.prepare(query));
+    }
+
+}
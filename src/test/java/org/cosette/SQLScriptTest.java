@@ -0,0 +1,41 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SQLScriptTest {
+
+    private static String fingerprint(String statement) {
+        List<SQLScript.Statement> statements = new ArrayList<>();
+        new SQLScript(statement).forEach(statements::add);
+        assertEquals(1, statements.size());
+        return statements.get(0).getFingerprint();
+    }
+
+    @Test
+    void layoutIsNormalized() {
+        assertEquals("SELECT * FROM EMP WHERE A = 1", SQLScript.normalize("SELECT *\n  /* c */ FROM\tEMP   WHERE A = 1"));
+        assertEquals("SELECT /*+ hint */ A FROM EMP", SQLScript.normalize("SELECT  /*+ hint */  A FROM EMP"));
+        assertEquals(fingerprint("SELECT * FROM EMP;"), fingerprint("SELECT *\n    FROM EMP;"));
+    }
+
+    @Test
+    void quotedPartsAreKept() {
+        assertEquals("SELECT 'a  b', \"c  d\", `e  f` FROM T",
+                SQLScript.normalize("SELECT 'a  b', \"c  d\", `e  f`  FROM T"));
+        assertEquals("SELECT `a /* b */ c` FROM T", SQLScript.normalize("SELECT `a /* b */ c` FROM T"));
+        assertEquals("SELECT 'a'\n'b'", SQLScript.normalize("SELECT 'a'\n  'b'"));
+        assertNotEquals(fingerprint("SELECT `a  b` FROM T;"), fingerprint("SELECT `a b` FROM T;"));
+    }
+
+    @Test
+    void fingerprintsAreSHA256() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", TranslationCache.hash("abc"));
+        assertEquals(TranslationCache.hash("SELECT 1"), fingerprint("SELECT   1;"));
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaCacheTest {
+
+    private static final String DDL = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10));";
+
+    @Test
+    void sameScriptIsBuiltOnceAndShared() throws Exception {
+        SchemaCache cache = new SchemaCache(4, Long.MAX_VALUE);
+        CosetteSchema first = cache.getOrBuild(DDL);
+        CosetteSchema second = cache.getOrBuild(DDL);
+        assertSame(first, second);
+        assertSame(first.plus(), second.plus());
+        assertFalse(first.isMutable());
+        SchemaCache.Statistics statistics = cache.statistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getLoads());
+    }
+
+    @Test
+    void leastRecentlyUsedSchemaIsEvicted() throws Exception {
+        SchemaCache cache = new SchemaCache(2, Long.MAX_VALUE);
+        CosetteSchema a = cache.getOrBuild("CREATE TABLE A (X INTEGER);");
+        cache.getOrBuild("CREATE TABLE B (X INTEGER);");
+        assertSame(a, cache.getOrBuild("CREATE TABLE A (X INTEGER);"));
+        cache.getOrBuild("CREATE TABLE C (X INTEGER);");
+        assertEquals(1, cache.statistics().getEvictions());
+        assertNotNull(cache.get(SchemaCache.key("CREATE TABLE A (X INTEGER);")));
+        assertNull(cache.get(SchemaCache.key("CREATE TABLE B (X INTEGER);")));
+    }
+
+    @Test
+    void byteBoundKeepsTheMostRecentSchema() throws Exception {
+        SchemaCache cache = new SchemaCache(16, 1);
+        cache.getOrBuild("CREATE TABLE A (X INTEGER);");
+        cache.getOrBuild("CREATE TABLE B (X INTEGER);");
+        assertEquals(1, cache.statistics().getResidentCount());
+        assertNotNull(cache.get(SchemaCache.key("CREATE TABLE B (X INTEGER);")));
+    }
+
+    @Test
+    void failingScriptsAreNotCached() {
+        SchemaCache cache = new SchemaCache(4, Long.MAX_VALUE);
+        assertThrows(Exception.class, () -> cache.getOrBuild("CREATE TABLE A (X INTEGER, PRIMARY KEY (Y));"));
+        assertEquals(0, cache.statistics().getResidentCount());
+    }
+
+    @Test
+    void cachedSchemasAreTranslatedAgainst() throws Exception {
+        SchemaCache cache = new SchemaCache(4, Long.MAX_VALUE);
+        Translation translation = new Translator(cache.getOrBuild(DDL)).translate("SELECT ENAME FROM EMP;");
+        assertEquals(0, translation.getErrors().size());
+        assertEquals(1, translation.getJSON().get("queries").size());
+    }
+
+    @Test
+    void rejectsEmptyBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new SchemaCache(0, 1));
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaRegistryTest {
+
+    @Test
+    void readersKeepTheVersionTheyStartedWith() {
+        SchemaRegistry registry = new SchemaRegistry();
+        assertEquals(List.of(), registry.apply("CREATE TABLE EMP (EMPNO INTEGER);"));
+        CosetteSchema before = registry.current();
+        assertEquals(List.of(), registry.apply("CREATE TABLE DEPT (DEPTNO INTEGER);"));
+        CosetteSchema after = registry.current();
+        assertNotSame(before, after);
+        assertNull(before.getTable("DEPT"));
+        assertNotNull(after.getTable("DEPT"));
+        assertSame(before.getTable("EMP"), after.getTable("EMP"));
+    }
+
+    @Test
+    void publishedVersionsAreSealed() {
+        SchemaRegistry registry = new SchemaRegistry();
+        assertFalse(registry.current().isMutable());
+        SchemaGenerator generator = new SchemaGenerator(registry.current());
+        assertThrows(IllegalStateException.class, () -> generator.applyCreateTable("CREATE TABLE EMP (EMPNO INTEGER)"));
+    }
+
+    @Test
+    void failingStatementsDoNotStopTheScript() {
+        SchemaRegistry registry = new SchemaRegistry();
+        List<StatementError> errors = registry.apply("CREATE TABLE EMP (EMPNO INTEGER, PRIMARY KEY (NAME));\n"
+                + "CREATE TABLE DEPT (DEPTNO INTEGER);");
+        assertEquals(1, errors.size());
+        assertNull(registry.current().getTable("EMP"));
+        assertNotNull(registry.current().getTable("DEPT"));
+    }
+
+    @Test
+    void translatorsReadTheCurrentVersion() {
+        SchemaRegistry registry = new SchemaRegistry();
+        Translator translator = new Translator(registry);
+        assertEquals(1, translator.translate("SELECT * FROM EMP;").getErrors().size());
+        registry.apply("CREATE TABLE EMP (EMPNO INTEGER);");
+        assertEquals(List.of(), translator.translate("SELECT * FROM EMP;").getErrors());
+    }
+
+}
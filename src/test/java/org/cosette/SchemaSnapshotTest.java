@@ -0,0 +1,97 @@
+package org.cosette;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaSnapshotTest {
+
+    private static final String SCHEMA = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10) NOT NULL, "
+            + "SAL DOUBLE, DEPTNO INTEGER, PRIMARY KEY (EMPNO), CHECK (SAL > 0));\n"
+            + "CREATE TABLE DEPT (DEPTNO INTEGER, DNAME VARCHAR(10), UNIQUE (DEPTNO));\n"
+            + "DECLARE SCALAR FUNCTION BONUS(INTEGER, DOUBLE) RETURNS DOUBLE;\n"
+            + "DECLARE AGGREGATE FUNCTION MEDIAN(DOUBLE) RETURNS DOUBLE;\n";
+
+    private static final String QUERIES = "SELECT BONUS(EMPNO, SAL) FROM EMP;\n"
+            + "SELECT DEPTNO, MEDIAN(SAL) FROM EMP GROUP BY DEPTNO;\n"
+            + "SELECT * FROM EMP JOIN DEPT ON EMP.DEPTNO = DEPT.DEPTNO;\n";
+
+    @TempDir
+    File directory;
+
+    private static SchemaGenerator generate(String script) {
+        SchemaGenerator generator = new SchemaGenerator();
+        List<StatementError> errors = generator.applyScript(new SQLScript(script));
+        assertEquals(List.of(), errors);
+        return generator;
+    }
+
+    private static String translate(SchemaGenerator generator, String queries) {
+        Translation translation = new Translator(generator).translate(queries);
+        assertEquals(0, translation.getErrors().size(), () -> translation.getErrors().toString());
+        return translation.getJSON().toString();
+    }
+
+    @Test
+    void restoredSchemaTranslatesLikeTheOriginal() throws IOException {
+        SchemaGenerator original = generate(SCHEMA);
+        File snapshot = new File(directory, "schema.snapshot");
+        original.saveSnapshot(snapshot);
+        SchemaGenerator restored = SchemaGenerator.loadSnapshot(snapshot);
+        assertEquals(translate(original, QUERIES), translate(restored, QUERIES));
+    }
+
+    @Test
+    void restoredTablesKeepTheirDefinitions() throws IOException {
+        SchemaGenerator original = generate(SCHEMA);
+        File snapshot = new File(directory, "schema.snapshot");
+        original.saveSnapshot(snapshot);
+        CosetteSchema restored = SchemaGenerator.loadSnapshot(snapshot).schema();
+        for (String name : new String[]{"EMP", "DEPT"}) {
+            assertEquals(((CosetteTable) original.schema().getTable(name)).describe(),
+                    ((CosetteTable) restored.getTable(name)).describe());
+        }
+        assertEquals(1, ((CosetteTable) restored.getTable("EMP")).getCheckConstraints().size());
+        assertEquals(original.customFunctions().keySet(), restored.functions.keySet());
+    }
+
+    @Test
+    void checksUsingDeclaredFunctionsAreRestored() throws IOException {
+        SchemaGenerator original = generate("DECLARE SCALAR FUNCTION POS(INTEGER) RETURNS BOOLEAN;\n"
+                + "CREATE TABLE T (A INTEGER, CHECK (POS(A)));\n");
+        File snapshot = new File(directory, "functions.snapshot");
+        original.saveSnapshot(snapshot);
+        SchemaGenerator restored = SchemaGenerator.loadSnapshot(snapshot);
+        assertEquals(translate(original, "SELECT * FROM T;"), translate(restored, "SELECT * FROM T;"));
+    }
+
+    @Test
+    void checksWithSubQueriesAreRestored() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int table = 0; table < 32; table += 1) {
+            script.append("CREATE TABLE R").append(table).append(" (A INTEGER);\n");
+            script.append("CREATE TABLE S").append(table).append(" (A INTEGER, CHECK (A IN (SELECT A FROM R")
+                    .append(table).append(")));\n");
+        }
+        SchemaGenerator original = generate(script.toString());
+        File snapshot = new File(directory, "subqueries.snapshot");
+        original.saveSnapshot(snapshot);
+        SchemaGenerator restored = SchemaGenerator.loadSnapshot(snapshot);
+        assertEquals(translate(original, "SELECT * FROM S7;"), translate(restored, "SELECT * FROM S7;"));
+        assertEquals(List.copyOf(original.schema().getTableNames()), List.copyOf(restored.schema().getTableNames()));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        File other = new File(directory, "other.snapshot");
+        Files.write(other.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> SchemaGenerator.loadSnapshot(other));
+    }
+
+}
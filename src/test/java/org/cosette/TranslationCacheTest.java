@@ -0,0 +1,108 @@
+package org.cosette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranslationCacheTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final TranslationOptions OPTIONS = TranslationOptions.DEFAULT.withSections(
+            EnumSet.allOf(TranslationOptions.Section.class));
+
+    private static final String BASE = "CREATE TABLE EMP (EMPNO INTEGER, ENAME VARCHAR(10), DEPTNO INTEGER);\n"
+            + "CREATE TABLE DEPT (DEPTNO INTEGER, DNAME VARCHAR(10));\n"
+            + "DECLARE SCALAR FUNCTION F(INTEGER) RETURNS INTEGER;\n"
+            + "CREATE VIEW V AS SELECT DEPTNO FROM DEPT;\n"
+            + "SELECT * FROM EMP;\n"
+            + "SELECT * FROM DEPT;\n"
+            + "SELECT F(EMPNO) FROM EMP;\n"
+            + "SELECT * FROM V;\n"
+            + "SELECT * FROM EMP WHERE DEPTNO IN (SELECT DEPTNO FROM DEPT);\n";
+
+    @TempDir
+    File directory;
+
+    private static String translate(String script, SQLJSONParser parser) throws Exception {
+        SchemaGenerator generator = new SchemaGenerator();
+        for (SQLScript.Statement statement : new SQLScript(script)) {
+            parser.parseStatement(generator, statement);
+        }
+        return parser.toJSON(mapper).toString();
+    }
+
+    /**
+     * Translate the base script with a cache, then the edited script with that cache, and check that the result equals
+     * a full translation. The returned cache counts the reused translations.
+     */
+    private TranslationCache edit(String edited) throws Exception {
+        File file = new File(directory, "script.cache");
+        SQLJSONParser base = new SQLJSONParser(OPTIONS, TranslationCache.read(file, OPTIONS));
+        translate(BASE, base);
+        base.getCache().write(file);
+        TranslationCache previous = TranslationCache.read(file, OPTIONS);
+        String incremental = translate(edited, new SQLJSONParser(OPTIONS, previous));
+        assertEquals(translate(edited, new SQLJSONParser(OPTIONS)), incremental);
+        return previous;
+    }
+
+    private static void assertReused(TranslationCache cache, int hits, int misses) {
+        assertEquals(hits, cache.getHits(), "hits");
+        assertEquals(misses, cache.getMisses(), "misses");
+    }
+
+    @Test
+    void unchangedScriptsAreReused() throws Exception {
+        assertReused(edit(BASE), 5, 0);
+    }
+
+    @Test
+    void changedTablesInvalidateTheirQueries() throws Exception {
+        assertReused(edit(BASE.replace("DNAME VARCHAR(10)", "DNAME VARCHAR(10), LOC INTEGER")), 2, 3);
+    }
+
+    @Test
+    void changedFunctionsAndViewsInvalidateTheirQueries() throws Exception {
+        assertReused(edit(BASE.replace("F(INTEGER) RETURNS INTEGER", "F(INTEGER) RETURNS DOUBLE")), 4, 1);
+        assertReused(edit(BASE.replace("SELECT DEPTNO FROM DEPT;", "SELECT DEPTNO FROM DEPT WHERE DEPTNO > 1;")),
+                4, 1);
+    }
+
+    @Test
+    void newAndChangedQueriesAreTranslated() throws Exception {
+        assertReused(edit(BASE.replace("SELECT * FROM EMP;\n", "SELECT * FROM EMP;\nSELECT ENAME FROM EMP;\n")), 5, 1);
+        assertReused(edit(BASE.replace("SELECT * FROM DEPT;", "SELECT * FROM DEPT WHERE DNAME = 'a  b';")), 4, 1);
+    }
+
+    @Test
+    void formattingDoesNotInvalidate() throws Exception {
+        assertReused(edit(BASE.replace("SELECT * FROM EMP WHERE", "SELECT *\n   /* c */ FROM   EMP\tWHERE")), 5, 0);
+        assertReused(edit(BASE.replace("DEPT (", "DEPT   (\n  ")), 5, 0);
+    }
+
+    @Test
+    void cachesOfOtherOptionsAreIgnored() throws Exception {
+        File file = new File(directory, "script.cache");
+        SQLJSONParser base = new SQLJSONParser(OPTIONS, TranslationCache.read(file, OPTIONS));
+        translate(BASE, base);
+        base.getCache().write(file);
+        TranslationOptions normalized = OPTIONS.withNormalizations(EnumSet.allOf(Normalization.class));
+        TranslationCache previous = TranslationCache.read(file, normalized);
+        translate(BASE, new SQLJSONParser(normalized, previous));
+        assertReused(previous, 0, 5);
+    }
+
+    @Test
+    void missingCachesAreEmpty() throws IOException {
+        TranslationCache cache = TranslationCache.read(new File(directory, "missing.cache"), OPTIONS);
+        assertReused(cache, 0, 0);
+    }
+
+}